@@ -1,58 +1,318 @@
 package mnkgame;
 
+import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 
 class AlphaBetaPro implements MNKPlayer {
-    private MNKBoard B;
+    private MNKBitBoard B;
     private Random rand;
     private boolean first;
     private MNKGameState myWin, yourWin;
-    private long start, current_hash;
-    private long[][] zobristTable;
-    private HashMap<Long, MNKBoardPlus> tTable;
+    private ZobristHash zobrist;
+    private OpeningBook book;
+    private TranspositionTable tTable;
+    private final int tt_mb, threads;
     private MovesQueue Q;
     private StrategySet max, min;
-    private int TIMEOUT;
-    private boolean TEMPO_SCADUTO;
-    private int max_set_size;
+    private TimeManager time;
+    private volatile boolean TEMPO_SCADUTO;
 
-    private static class MNKBoardPlus {
-        public enum Flag {
-            EXACT, LOWERBOUND, UPPERBOUND
-        }
+    /**
+     * Ricerca Lazy SMP: threads - 1 helper, ognuno con la propria scacchiera,
+     * MovesQueue e coppia di StrategySet, cercano in parallelo al thread
+     * principale condividendo tTable e le chiavi Zobrist. Il loro unico effetto
+     * sulla mossa scelta passa dalla tabella delle trasposizioni.
+     * Con il costruttore senza argomenti, l'unico usato dal framework,
+     * threads si imposta con la proprietà di sistema mnkgame.threads
+     * (default 1). futures[h] è la ricerca in corso dell'helper h, in un
+     * array allocato con gli helper perché parallelSearch non allochi.
+     */
+    private AlphaBetaPro[] helpers;
+    private Future<?>[] futures;
+    private ExecutorService pool;
 
-        private Flag flag;
-        private double eval;
-        private int depth;
+    /**
+     * Pondering (opzionale, con la proprietà di sistema mnkgame.ponder=true):
+     * dopo ogni mossa ponderer cerca, sul tempo dell'avversario, le
+     * configurazioni che seguono le sue PONDER_REPLIES risposte più
+     * probabili, riempiendo la tabella delle trasposizioni condivisa.
+     * Alla selectCell successiva il pondering viene fermato e la ricerca
+     * riparte dalle entry trovate.
+     */
+    private AlphaBetaPro ponderer;
+    private ExecutorService ponder_pool;
+    private Future<?> pondering;
+    private static final int PONDER_REPLIES = 3;
 
-        public MNKBoardPlus(Flag f, double val, int d) {
-            flag = f;
-            eval = val;
-            depth = d;
-        }
+    /**
+     * Identificativo dell'helper (0 per il thread principale) e incremento
+     * di profondità con cui l'helper esegue ogni iterazione.
+     */
+    private final int helper_id;
+    private int depth_offset;
+
+    /**
+     * Statistiche di ricerca del thread, azzerate a ogni selectCell; per il
+     * thread principale, a fine mossa, includono anche quelle degli helper.
+     * Se la proprietà di sistema "mnkgame.stats" indica un file, a ogni
+     * mossa vi viene aggiunta una riga JSON con le statistiche.
+     */
+    private final SearchStatistics stats = new SearchStatistics();
+    private PrintStream stats_log;
+
+    /**
+     * Stack condiviso delle mosse da esplorare: ogni nodo vi copia le sue
+     * mosse a partire da moves_top e lo libera in uscita, così il ciclo di
+     * ricerca non alloca nulla. Viene ingrandito solo quando un nodo non ci
+     * sta, cosa che smette di accadere dopo le prime ricerche.
+     */
+    private int[] moves_stack;
+    private int moves_top;
+
+    /**
+     * Punteggio d'ordinamento di ogni mossa in moves_stack (stessa posizione).
+     */
+    private int[] score_stack;
+
+    /**
+     * Killer move: per ogni ply (numero di celle marcate) le due ultime
+     * mosse, come cellIndex, che hanno causato un taglio beta; -1 se assenti.
+     * Lo slot della ply p occupa killers[2*p] e killers[2*p+1]; l'array
+     * viene allungato da mark() quando si supera la ply più alta raggiunta.
+     */
+    private int[] killers;
+    private static final int INITIAL_PLIES = 64;
+
+    /**
+     * Regione su cui sono indicizzati history, seen e threat_count: copre
+     * le celle entro K-1 dalle celle marcate, le sole che possono stare in
+     * MovesQueue o nelle MNKStrategy, e viene allargata da mark(). Così
+     * la memoria della ricerca cresce con le mosse giocate e non con
+     * l'area della scacchiera.
+     */
+    private BoardRegion region;
+
+    /**
+     * History heuristic: history[g][r] cresce con depth^2 a ogni taglio
+     * beta causato dalla mossa del giocatore g nella cella in posizione r
+     * di region, e viene dimezzata a ogni selectCell e quando raggiunge
+     * HISTORY_MAX. history_cells[0] ... history_cells[history_size - 1]
+     * sono le celle (cellIndex) con history non nulla per almeno un
+     * giocatore: l'invecchiamento visita solo quelle.
+     */
+    private int[][] history;
+    private int[] history_cells;
+    private int history_size;
+    private static final int HISTORY_MAX = 0xFFFF;
+
+    /**
+     * Punteggi d'ordinamento riservati alle due killer move: superano
+     * quello di ogni altra mossa, priority << 16 | history.
+     */
+    private static final int KILLER_1 = Integer.MAX_VALUE, KILLER_2 = Integer.MAX_VALUE - 1;
+
+    /**
+     * Profondità massima, in mosse dell'attaccante, della ricerca VCF
+     * eseguita prima della ricerca principale e nelle foglie di alphaBeta.
+     */
+    private static final int VCF_ROOT_DEPTH = 16, VCF_LEAF_DEPTH = 2;
+
+    /**
+     * Numero di celle libere sotto il quale selectCell prova a risolvere
+     * esattamente la partita con EndgameSolver, entro la scadenza soft.
+     * Il solver, con la sua tabella, viene creato al primo finale.
+     */
+    private static final int ENDGAME_CELLS = 24;
+    private EndgameSolver solver;
+
+    /**
+     * Marcatori per eliminare i duplicati nelle celle raccolte dalla VCF:
+     * la cella x, in posizione r di region, è già stata raccolta se
+     * seen[r] == seen_stamp. Con lo stesso marcatore, threat_count[r] e
+     * threat_cell[r] sono le celle vincenti create marcando x, contate
+     * da countThreats.
+     */
+    private int[] seen, threat_count, threat_cell;
+    private int seen_stamp;
+
+    /**
+     * Semi-ampiezza della finestra di aspirazione usata da iterativeDeepening.
+     */
+    private static final double ASPIRATION_WINDOW = 0.25;
+
+    /**
+     * Late move reductions (vedi searchMove): profondità minima, numero di
+     * mosse mai ridotte per ordine, priorità massima in MovesQueue delle
+     * mosse ridotte anche se tra le prime, e numero di mosse oltre il quale
+     * la riduzione è di due ply invece che di uno.
+     */
+    private static final int LMR_DEPTH = 3, LMR_MOVES = 3, LMR_PRIORITY = 1, LMR_LATE_MOVES = 8;
+
+    /**
+     * Ampiezza delle finestre nulle.
+     */
+    private static final double NULL_WINDOW = 1e-4;
+
+    /**
+     * Generatore di mosse candidate (vedi candidates), attivo di default
+     * sulle scacchiere con almeno BEAM_CELLS celle: nei nodi interni con
+     * più di beam_width mosse si tengono le prime beam_width in ordine, le
+     * celle entro beam_radius (distanza di Chebyshev) dalle ultime
+     * BEAM_RECENT mosse giocate e le celle di minaccia. Si configura con
+     * le proprietà di sistema mnkgame.beam (0 lo disattiva) e
+     * mnkgame.beam.radius.
+     */
+    private static final int BEAM_CELLS = 225, BEAM_WIDTH = 12, BEAM_RADIUS = 2, BEAM_RECENT = 2;
+    private int beam_width, beam_radius;
+
+    /**
+     * Driver MTD(f) (opzionale, con la proprietà di sistema mnkgame.mtdf=true):
+     * ogni iterazione converge al valore con ricerche a finestra stretta di
+     * ampiezza MTDF_WINDOW, che è anche la precisione del risultato.
+     */
+    private boolean use_mtdf;
+    private static final double MTDF_WINDOW = 0.01;
+
+    /**
+     * cellIndex e valutazione della mossa migliore dell'ultima iterazione
+     * completata (best_move) e dell'iterazione in corso (root_move);
+     * -1 se non ancora disponibile.
+     */
+    private int best_move, root_move;
+    private double best_score, root_score;
+
+    /**
+     * Complessità della posizione stimata da complexity() all'inizio della
+     * mossa, corretta dopo ogni iterazione in base all'instabilità della
+     * ricerca (mossa migliore cambiata, punteggio oscillato); -1 per gli
+     * helper e fuori da selectCell, che non ridistribuiscono il tempo.
+     */
+    private double base_complexity = -1, instability;
+    private static final double MOVE_CHANGE = 0.25, MAX_SWING = 0.25;
+
+    public AlphaBetaPro() {
+        this(TranspositionTable.DEFAULT_MB, Integer.getInteger("mnkgame.threads", 1));
     }
 
-    public AlphaBetaPro() {}
+    /**
+     * @param tt_mb   memoria da dedicare alla tabella delle trasposizioni, in MB
+     * @param threads numero di thread della ricerca (1 = nessun helper)
+     */
+    public AlphaBetaPro(int tt_mb, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one search thread is required.");
+        this.tt_mb     = tt_mb;
+        this.threads   = threads;
+        this.helper_id = 0;
+    }
+
+    /**
+     * Helper della ricerca Lazy SMP: condivide con main le tabelle e il
+     * timeout, ma mantiene un proprio stato di ricerca.
+     * @param main      giocatore principale, già inizializzato
+     * @param helper_id identificativo dell'helper, a partire da 1 (0 per
+     *                  ponderer, che non perturba l'ordine delle mosse)
+     */
+    private AlphaBetaPro(AlphaBetaPro main, int helper_id) {
+        this.tt_mb     = main.tt_mb;
+        this.threads   = 1;
+        this.helper_id = helper_id;
+        rand           = new Random(main.rand.nextLong());
+        first          = main.first;
+        myWin          = main.myWin;
+        yourWin        = main.yourWin;
+        zobrist        = new ZobristHash(main.zobrist);
+        tTable         = main.tTable;
+        time           = main.time;
+        depth_offset   = helper_id % 2;
+        use_mtdf       = main.use_mtdf;
+        beam_width     = main.beam_width;
+        beam_radius    = main.beam_radius;
+        helpers        = new AlphaBetaPro[0];
+        futures        = new Future<?>[0];
+        initSearch(main.B.M, main.B.N, main.B.K);
+    }
 
     @Override
     public void initPlayer(int M, int N, int K, boolean first, int timeout_in_secs) {
-        B            = new MNKBoard(M, N, K);
         rand         = new Random(System.currentTimeMillis());
         this.first   = first;
         myWin        = first ? MNKGameState.WINP1 : MNKGameState.WINP2;
         yourWin      = first ? MNKGameState.WINP2 : MNKGameState.WINP1;
-        zobristTable = new long[M * N][2];
-        tTable       = new HashMap<>();
+        zobrist      = new ZobristHash(M, N, K);
+        tTable       = new TranspositionTable(tt_mb);
+        time         = new TimeManager(timeout_in_secs);
+        solver       = null;
+        book         = OpeningBook.open(Paths.get(System.getProperty("mnkgame.book", ".")), M, N, K);
+        initSearch(M, N, K);
+
+        use_mtdf     = Boolean.getBoolean("mnkgame.mtdf");
+        beam_width   = Integer.getInteger("mnkgame.beam", M * N >= BEAM_CELLS ? BEAM_WIDTH : 0);
+        beam_radius  = Integer.getInteger("mnkgame.beam.radius", BEAM_RADIUS);
+        if (beam_width < 0 || beam_radius < 0)
+            throw new IllegalArgumentException("Invalid candidate pruning: width " + beam_width + ", radius " + beam_radius);
+
+        String log = System.getProperty("mnkgame.stats");
+        if (stats_log != null)
+            stats_log.close();
+        try {
+            stats_log = log == null ? null : new PrintStream(new FileOutputStream(log, true), true);
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Cannot open statistics log " + log, e);
+        }
+
+        if (pool != null)
+            pool.shutdownNow();
+        if (ponder_pool != null) {
+            stopPondering();
+            ponder_pool.shutdownNow();
+        }
+        helpers = new AlphaBetaPro[threads - 1];
+        for (int h = 0; h < helpers.length; h++)
+            helpers[h] = new AlphaBetaPro(this, h + 1);
+        futures = new Future<?>[helpers.length];
+        pool = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, r -> {
+            Thread t = new Thread(r, "AlphaBetaPro-helper");
+            t.setDaemon(true);
+            return t;
+        });
+
+        ponderer    = null;
+        ponder_pool = null;
+        if (Boolean.getBoolean("mnkgame.ponder")) {
+            ponderer      = new AlphaBetaPro(this, 0);
+            ponderer.time = new TimeManager(timeout_in_secs);
+            ponder_pool   = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "AlphaBetaPro-ponder");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Inizializza lo stato proprio di ogni thread di ricerca.
+     */
+    private void initSearch(int M, int N, int K) {
+        B            = new MNKBitBoard(M, N, K);
         Q            = new MovesQueue(B, first ? MNKCellState.P1 : MNKCellState.P2);
         max          = new StrategySet(B, first ? MNKCellState.P1 : MNKCellState.P2);
         min          = new StrategySet(B, first ? MNKCellState.P2 : MNKCellState.P1);
-        TIMEOUT      = timeout_in_secs;
-        max_set_size = 0;
-
-        for (int i = 0; i < M * N; i++) {
-            zobristTable[i][0] = rand.nextLong();
-            zobristTable[i][1] = rand.nextLong();
-        }
+        region       = new BoardRegion(M, N);
+        moves_stack  = new int[4 * INITIAL_PLIES * K];
+        score_stack  = new int[moves_stack.length];
+        killers      = new int[2 * INITIAL_PLIES];
+        history      = new int[2][region.area()];
+        history_cells = new int[region.area()];
+        history_size = 0;
+        seen         = new int[region.area()];
+        threat_count = new int[region.area()];
+        threat_cell  = new int[region.area()];
+        seen_stamp   = 0;
+        moves_top    = 0;
+        Arrays.fill(killers, -1);
     }
 
     /**
@@ -60,10 +320,17 @@ class AlphaBetaPro implements MNKPlayer {
      * @param B configurazione attuale di gioco
      * @return True se è il turno di questo giocatore; False altrimenti
      */
-    private boolean myTurn(MNKBoard B) {
+    private boolean myTurn(MNKBitBoard B) {
         return first ? (B.currentPlayer() == 0) : (B.currentPlayer() == 1);
     }
 
+    /**
+     * @return True se [i,j] è dentro la scacchiera e libera
+     */
+    private boolean isFree(int i, int j) {
+        return i >= 0 && i < B.M && j >= 0 && j < B.N && B.cellState(i, j) == MNKCellState.FREE;
+    }
+
     private int cellIndex(MNKCell c) {
         return c.i * B.N + c.j;
     }
@@ -74,16 +341,330 @@ class AlphaBetaPro implements MNKPlayer {
      * @param B configurazione attuale di gioco
      * @return hash di c
      */
-    private long zobristHash(MNKCell c, MNKBoard B) {
+    private long zobristHash(MNKCell c, MNKBitBoard B) {
         if (B.cellState(c.i, c.j) == MNKCellState.FREE)
             throw new IllegalStateException("Hashing of free cell requested.");
-        return B.cellState(c.i, c.j) == MNKCellState.P1 ? zobristTable[cellIndex(c)][0] : zobristTable[cellIndex(c)][1];
+        return zobrist.key(cellIndex(c), B.cellState(c.i, c.j) == MNKCellState.P1 ? 0 : 1);
+    }
+
+    /**
+     * Aggiorna gli hash (sotto tutte le simmetrie) con la cella c, appena
+     * marcata o in procinto di essere smarcata.
+     * Complessità: O(S), dove S è il numero di simmetrie della scacchiera
+     */
+    private void hashCell(MNKCell c, MNKBitBoard B) {
+        if (B.cellState(c.i, c.j) == MNKCellState.FREE)
+            throw new IllegalStateException("Hashing of free cell requested.");
+        zobrist.toggle(cellIndex(c), B.cellState(c.i, c.j) == MNKCellState.P1 ? 0 : 1);
+    }
+
+    /**
+     * Allarga region, se serve, alle celle entro K-1 dalla cella x,
+     * rimappando gli array indicizzati su region.
+     * Complessità: O(1) ammortizzato
+     */
+    private void cover(int x) {
+        if (!region.cover(x, B.K - 1))
+            return;
+        history[0]    = region.grow(history[0], 1, 0);
+        history[1]    = region.grow(history[1], 1, 0);
+        seen          = region.grow(seen, 1, 0);
+        threat_count  = region.grow(threat_count, 1, 0);
+        threat_cell   = region.grow(threat_cell, 1, 0);
+        history_cells = Arrays.copyOf(history_cells, region.area());
+    }
+
+    /**
+     * Garantisce che moves_stack abbia almeno n posizioni libere oltre moves_top.
+     * Complessità: O(1) ammortizzato
+     */
+    private void reserve(int n) {
+        if (moves_top + n > moves_stack.length) {
+            moves_stack = Arrays.copyOf(moves_stack, Math.max(2 * moves_stack.length, moves_top + n));
+            score_stack = Arrays.copyOf(score_stack, moves_stack.length);
+        }
     }
 
-    private void mark(MNKCell c, MNKBoard B) {
+    /**
+     * Ordina le mosse moves_stack[from] ... moves_stack[to - 1] per punteggio
+     * decrescente: prima le killer move della ply, poi le altre per priorità
+     * nella MovesQueue e, a parità di priorità, per valore di history.
+     * Le mosse arrivano già in ordine di priorità, quindi l'insertion sort
+     * sposta ogni mossa solo all'interno del suo gruppo di priorità.
+     * Complessità: O(n + i), dove n = to - from e i è il numero di inversioni
+     */
+    private void order(int from, int to) {
+        int ply = B.marked(), side = B.currentPlayer();
+        for (int k = from; k < to; k++) {
+            int x = moves_stack[k], score;
+            if (x == killers[2 * ply])
+                score = KILLER_1;
+            else if (x == killers[2 * ply + 1])
+                score = KILLER_2;
+            else
+                score = Q.getPriority(x) << 16 | history[side][region.index(x)];
+
+            int j = k;
+            for (; j > from && score_stack[j - 1] < score; j--) {
+                moves_stack[j] = moves_stack[j - 1];
+                score_stack[j] = score_stack[j - 1];
+            }
+            moves_stack[j] = x;
+            score_stack[j] = score;
+        }
+    }
+
+    /**
+     * Genera su moves_stack, a partire da from (= moves_top), le mosse del
+     * nodo interno in cui muove max (max_player) o min, in ordine.
+     * Senza potatura (beam_width 0, o al più beam_width mosse) sono tutte
+     * le mosse di Q. Altrimenti:
+     *  - con una cella vincente propria si gioca solo quella; con una
+     *    cella vincente dell'avversario si può solo bloccarla;
+     *  - se l'avversario ha una cella che crea due minacce vincenti (una
+     *    K-2 aperta, cioè presente in due sue MNKStrategy a K-2 simboli che
+     *    si completano su celle diverse, come le due di _XXX_ per K=5),
+     *    restano solo le celle di minaccia: quelle delle MNKStrategy a K-2
+     *    simboli dell'avversario (che la difendono) e le proprie (che
+     *    creano una minaccia K-1 e costringono a bloccarla);
+     *  - altrimenti si tengono le prime beam_width mosse, le celle di
+     *    minaccia e le celle vicine alle ultime BEAM_RECENT mosse.
+     * Le celle di minaccia non vengono mai scartate, quindi la potatura
+     * non perde vittorie o blocchi forzati.
+     * Complessità: O(q + s*K), dove q è la dimensione di Q e s quella dei
+     * due StrategySet
+     * @return numero di mosse generate
+     */
+    private int candidates(boolean max_player, int from) {
+        StrategySet own = max_player ? max : min, opp = max_player ? min : max;
+        reserve(Q.size() + (own.size() + opp.size()) * B.K);
+
+        if (beam_width > 0 && own.winning() >= 1)
+            return collect(own, B.K - 1, from);
+        if (beam_width > 0 && opp.winning() >= 1)
+            return collect(opp, B.K - 1, from);
+
+        int n = Q.moves(moves_stack, from);
+        order(from, from + n);
+        if (beam_width == 0 || n <= beam_width)
+            return n;
+
+        // Celle di minaccia, marcate in seen, a partire da from + n
+        int t = from + n;
+        boolean open = countThreats(opp, t);
+        int m = own.freeCells(B.K - 2, moves_stack, t, B);
+        for (int k = t; k < t + m; k++)
+            seen[region.index(moves_stack[k])] = seen_stamp;
+
+        int recent = Math.min(BEAM_RECENT, B.marked()), kept = from;
+        for (int k = from; k < from + n; k++) {
+            int x = moves_stack[k];
+            boolean keep = seen[region.index(x)] == seen_stamp;
+            if (!keep && !open) {
+                keep = k < from + beam_width;
+                int i = x / B.N, j = x % B.N;
+                for (int r = 1; r <= recent && !keep; r++) {
+                    int y = B.markedCell(B.marked() - r);
+                    keep = Math.abs(y / B.N - i) <= beam_radius && Math.abs(y % B.N - j) <= beam_radius;
+                }
+            }
+            if (keep)
+                moves_stack[kept++] = x;
+        }
+        stats.beam_pruned += from + n - kept;
+        return kept - from;
+    }
+
+    /**
+     * Aggiorna statistiche, killer move e history dopo un taglio beta
+     * causato dalla mossa x, appena smarcata.
+     * Complessità: O(1) ammortizzato
+     * @param first True se x era la prima mossa esplorata nel nodo
+     */
+    private void betaCutoff(int x, int depth, boolean first) {
+        stats.cutoff(first);
+
+        int ply = B.marked();
+        if (killers[2 * ply] != x) {
+            killers[2 * ply + 1] = killers[2 * ply];
+            killers[2 * ply]     = x;
+        }
+
+        int[] h = history[B.currentPlayer()];
+        int r = region.index(x);
+        if (history[0][r] == 0 && history[1][r] == 0)
+            history_cells[history_size++] = x;
+        h[r] += depth * depth;
+        if (h[r] >= HISTORY_MAX)
+            ageHistory();
+    }
+
+    /**
+     * Dimezza tutti i valori di history, così le informazioni vecchie
+     * contano sempre meno.
+     * Complessità: O(h), dove h è il numero di celle con history non nulla
+     */
+    private void ageHistory() {
+        for (int k = history_size - 1; k >= 0; k--) {
+            int r = region.index(history_cells[k]);
+            history[0][r] >>= 1;
+            history[1][r] >>= 1;
+            if (history[0][r] == 0 && history[1][r] == 0)
+                history_cells[k] = history_cells[--history_size];
+        }
+    }
+
+    /**
+     * Conta, per ogni cella libera x delle MNKStrategy di S con K-2 simboli,
+     * le celle vincenti distinte (al più 2) che il giocatore di S crea
+     * marcandola: ogni MNKStrategy a K-2 simboli che contiene x si completa
+     * sulla sua altra cella libera. x è una K-2 aperta, cioè una doppia
+     * minaccia, se le celle sono due: così lo è la cella comune alle due
+     * MNKStrategy allineate di _XXX_ per K=5, mentre non lo è una cella di
+     * XX__XX, dove le due MNKStrategy si completano sulla stessa cella.
+     * Il conteggio di x, in posizione r di region, è threat_count[r],
+     * valido se seen[r] == seen_stamp; threat_cell[r] è la prima cella
+     * vincente trovata.
+     * Complessità: O(m*K), dove m è il numero di MNKStrategy di S con K-2 simboli
+     * @param at posizione di moves_stack, da moves_top in poi, da cui
+     *      usare lo spazio libero
+     * @return True se S ha almeno una K-2 aperta
+     */
+    private boolean countThreats(StrategySet S, int at) {
+        reserve(at - moves_top + 2 * S.threats(B.K - 2));
+        int n = S.threatPairs(moves_stack, at, B);
+        boolean open = false;
+        nextStamp();
+        for (int k = at; k < at + n; k++) {
+            int r = region.index(moves_stack[k]), y = moves_stack[at + ((k - at) ^ 1)];
+            if (seen[r] != seen_stamp) {
+                seen[r]         = seen_stamp;
+                threat_count[r] = 1;
+                threat_cell[r]  = y;
+            } else if (threat_count[r] == 1 && threat_cell[r] != y) {
+                threat_count[r] = 2;
+                open = true;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Complessità: O(q + n*K), dove q = count e n è la dimensione di S
+     * @return la prima tra moves_stack[from] ... moves_stack[from + count - 1]
+     *      con cui il giocatore di S crea almeno threats (1 o 2) celle
+     *      vincenti distinte, come in countThreats, oppure -1
+     */
+    private int threatMove(StrategySet S, int from, int count, int threats) {
+        if (B.K < 3)
+            return -1;
+        countThreats(S, moves_top);
+        for (int k = from; k < from + count; k++) {
+            int x = moves_stack[k], r = region.index(x);
+            if (seen[r] == seen_stamp && threat_count[r] >= threats)
+                return x;
+        }
+        return -1;
+    }
+
+    /**
+     * Invalida tutti i marcatori di seen.
+     * Complessità: O(1) ammortizzato
+     */
+    private void nextStamp() {
+        if (++seen_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            seen_stamp = 1;
+        }
+    }
+
+    /**
+     * Copia su moves_stack, a partire da from, le celle libere distinte delle
+     * MNKStrategy di S con esattamente size simboli.
+     * Complessità: O(n*K), dove n è la dimensione di S
+     * @return numero di celle copiate
+     */
+    private int collect(StrategySet S, int size, int from) {
+        reserve(S.size() * B.K);
+        int n = S.freeCells(size, moves_stack, from, B);
+
+        nextStamp();
+        int m = from;
+        for (int k = from; k < from + n; k++) {
+            int r = region.index(moves_stack[k]);
+            if (seen[r] != seen_stamp) {
+                seen[r]          = seen_stamp;
+                moves_stack[m++] = moves_stack[k];
+            }
+        }
+        return m - from;
+    }
+
+    /**
+     * Threat-space search (VCF, "victory by continuous fours"): cerca una
+     * vittoria forzata per il giocatore di turno, il cui StrategySet è A,
+     * esplorando solo le mosse che creano una MNKStrategy vincente
+     * (K-1 simboli). L'avversario è costretto a bloccarla, quindi ogni
+     * mossa dell'attaccante ha una sola risposta; se una mossa crea due
+     * celle vincenti distinte, la vittoria è certa. Se l'avversario ha
+     * già una cella vincente, l'attaccante può solo occuparla, e la linea
+     * prosegue solo se così crea a sua volta una minaccia.
+     * Complessità: O(t^depth), dove t è il numero di minacce disponibili
+     * @param A     StrategySet del giocatore di turno (attaccante)
+     * @param D     StrategySet dell'avversario
+     * @param depth numero massimo di mosse dell'attaccante
+     * @return cellIndex della prima mossa di una sequenza vincente,
+     *      oppure -1 se non trovata
+     */
+    private int vcf(StrategySet A, StrategySet D, int depth) {
+        checkTime();
+        if (A.winning() >= 1)
+            return collect(A, B.K - 1, moves_top) > 0 ? moves_stack[moves_top] : -1;
+        if (depth == 0 || TEMPO_SCADUTO)
+            return -1;
+
+        int from = moves_top;
+        int n = collect(D, B.K - 1, from);
+        if (n >= 2)
+            return -1; // Due minacce avversarie: non si possono bloccare entrambe
+        if (n == 0)
+            n = collect(A, B.K - 2, from);
+        moves_top = from + n;
+
+        int result = -1;
+        for (int k = from; k < moves_top && result == -1 && !TEMPO_SCADUTO; k++) {
+            MNKCell c = B.cell(moves_stack[k]);
+            mark(c, B);
+
+            if (B.gameState() == MNKGameState.OPEN && A.winning() >= 1) {
+                int w = collect(A, B.K - 1, moves_top);
+                if (w >= 2) {
+                    result = moves_stack[k];
+                } else if (w == 1) {
+                    MNKCell block = B.cell(moves_stack[moves_top]);
+                    mark(block, B);
+                    if (B.gameState() == MNKGameState.OPEN && vcf(A, D, depth - 1) != -1)
+                        result = moves_stack[k];
+                    unmark(block, B);
+                }
+            }
+
+            unmark(c, B);
+        }
+        moves_top = from;
+        return result;
+    }
+
+    private void mark(MNKCell c, MNKBitBoard B) {
         B.markCell(c.i, c.j);
+        cover(cellIndex(c));
+        if (2 * B.marked() + 2 > killers.length) {
+            int n = killers.length;
+            killers = Arrays.copyOf(killers, 2 * n);
+            Arrays.fill(killers, n, 2 * n, -1);
+        }
         Q.remove(c, B);
-        current_hash = current_hash ^ zobristHash(c, B);
+        hashCell(c, B);
         max.update(c, B, Q);
         min.update(c, B, Q);
 
@@ -98,11 +679,11 @@ class AlphaBetaPro implements MNKPlayer {
         // }
     }
 
-    private void unmark(MNKCell c, MNKBoard B) {
+    private void unmark(MNKCell c, MNKBitBoard B) {
         Q.undo(B, c);
         max.undo(c, B, Q);
         min.undo(c, B, Q);
-        current_hash = current_hash ^ zobristHash(c, B);
+        hashCell(c, B);
         B.unmarkCell();
 
         // Debug messages
@@ -116,7 +697,47 @@ class AlphaBetaPro implements MNKPlayer {
          */
     }
 
-    private double eval(MNKBoard B) {
+    /**
+     * Stima della complessità della posizione, usata per dosare il tempo
+     * della mossa: con una sola mossa candidata la posizione è forzata;
+     * altrimenti parte da QUIET_COMPLEXITY e cresce con le mosse forzanti,
+     * cioè le celle libere delle MNKStrategy con K-1 o K-2 simboli di
+     * entrambi i giocatori, dove si creano o si parano le minacce.
+     * Durante la ricerca la stima viene corretta da adjustTime().
+     * Complessità: O(n*K), dove n è la dimensione di max e min
+     * @return valore in [0, 1]
+     */
+    private double complexity() {
+        if (Q.size() <= 1)
+            return 0;
+        int forcing = 0;
+        for (int size = Math.max(1, B.K - 2); size < B.K; size++) {
+            forcing += collect(max, size, moves_top);
+            forcing += collect(min, size, moves_top);
+        }
+        return Math.min(1.0, QUIET_COMPLEXITY + forcing / FORCING_MOVES);
+    }
+
+    private static final double QUIET_COMPLEXITY = 0.3, FORCING_MOVES = 12.0;
+
+    /**
+     * Ridistribuisce il tempo della mossa dopo un'iterazione completata:
+     * se la mossa migliore è cambiata o il punteggio è oscillato la
+     * scadenza soft si allunga, se resta stabile l'instabilità accumulata
+     * si dimezza a ogni iterazione e la scadenza torna verso quella di base.
+     * Complessità: O(1)
+     */
+    private void adjustTime(int previous_move, double previous_score) {
+        if (base_complexity < 0)
+            return;
+        instability /= 2;
+        if (best_move != previous_move)
+            instability += MOVE_CHANGE;
+        instability += Math.min(MAX_SWING, Math.abs(best_score - previous_score));
+        time.allocate(base_complexity + instability);
+    }
+
+    private double eval(MNKBitBoard B) {
         if (B.gameState() == myWin) {
             return +1;
         } else if (B.gameState() == yourWin) {
@@ -147,441 +768,741 @@ class AlphaBetaPro implements MNKPlayer {
 
             }
 
-            if (max.size() > min.size()) {
-                eval += 0.3;
-            } else if (min.size() > max.size())
-                eval -= 0.3;
+            // Valutazione a pattern, normalizzata in (-0.5, 0.5)
+            long a = max.score(), b = min.score();
+            eval += 0.5 * (a - b) / (a + b + 1);
             return eval;
         }
     }
 
-    private double alphaBeta(MNKBoard B, boolean max_player, double alpha, double beta, int depth) {
+    /**
+     * Conta il nodo e, ogni TimeManager.CHECK_INTERVAL nodi, controlla la
+     * scadenza hard.
+     * Complessità: O(1)
+     */
+    private void checkTime() {
+        if ((++stats.nodes & TimeManager.CHECK_MASK) == 0 && time.hardExpired())
+            TEMPO_SCADUTO = true;
+    }
+
+    /**
+     * Complessità: O(1)
+     * @return entry della tabella delle trasposizioni per la configurazione
+     *      attuale, oppure 0 se assente
+     */
+    private long ttProbe() {
+        stats.tt_probes++;
+        long ttEntry = tTable.probe(zobrist.canonical());
+        if (ttEntry != 0)
+            stats.tt_hits++;
+        return ttEntry;
+    }
+
+    /**
+     * Salva eval nella tabella delle trasposizioni, come valore esatto o
+     * come limite a seconda della finestra (alphaOrig, betaOrig) della ricerca.
+     * Complessità: O(1)
+     */
+    private void ttStore(double eval, int depth, double alphaOrig, double betaOrig) {
+        int flag = eval <= alphaOrig ? TranspositionTable.UPPERBOUND
+                 : eval >= betaOrig ? TranspositionTable.LOWERBOUND : TranspositionTable.EXACT;
+        stats.tt_stores++;
+        if (tTable.store(zobrist.canonical(), eval, depth, flag))
+            stats.tt_overwrites++;
+    }
+
+    private double alphaBeta(MNKBitBoard B, boolean max_player, double alpha, double beta, int depth) {
+        checkTime();
+
         // Transposition table lookup
-        MNKBoardPlus ttEntry = tTable.get(current_hash);
-        if (ttEntry != null && ttEntry.depth >= depth) {
-            switch (ttEntry.flag) {
-                case EXACT: { return ttEntry.eval; }
-                case LOWERBOUND:
-                    alpha = Math.max(alpha, ttEntry.eval);
-                case UPPERBOUND:
-                    beta = Math.min(beta, ttEntry.eval);
-            } if (alpha >= beta) return ttEntry.eval;
+        long ttEntry = ttProbe();
+        if (ttEntry != 0 && TranspositionTable.depth(ttEntry) >= depth) {
+            double ttEval = TranspositionTable.eval(ttEntry);
+            switch (TranspositionTable.flag(ttEntry)) {
+                case TranspositionTable.EXACT: { return ttEval; }
+                case TranspositionTable.LOWERBOUND:
+                    alpha = Math.max(alpha, ttEval); break;
+                case TranspositionTable.UPPERBOUND:
+                    beta = Math.min(beta, ttEval); break;
+            } if (alpha >= beta) return ttEval;
         }
 
         double eval;
         double alphaOrig = alpha, betaOrig = beta;
 
-        if (depth == 0 || B.gameState() != MNKGameState.OPEN || TEMPO_SCADUTO)
+        if (depth == 0 || B.gameState() != MNKGameState.OPEN || TEMPO_SCADUTO) {
             eval = eval(B);
-        else if (max_player) {
+
+            // Nelle foglie una breve VCF riconosce le vittorie forzate che
+            // la valutazione statica non vede. Senza MNKStrategy a K-2
+            // simboli il giocatore di turno non ha minacce da giocare e la
+            // VCF fallirebbe subito: le foglie tranquille la saltano
+            if (depth == 0 && Math.abs(eval) < 1 && B.gameState() == MNKGameState.OPEN && !TEMPO_SCADUTO) {
+                boolean mine = myTurn(B);
+                StrategySet A = mine ? max : min;
+                if (B.K >= 3 && A.threats(B.K - 2) > 0 && vcf(A, mine ? min : max, VCF_LEAF_DEPTH) != -1)
+                    eval = mine ? +1 : -1;
+            }
+        } else if (max_player) {
             eval = -999;
-            MNKCell[] queue_moves = Q.moves();
 
-            if (queue_moves == null) {
+            if (Q.size() == 0) {
                 return 0;
             }
 
-            for (MNKCell c : queue_moves) {
+            int from = moves_top;
+            moves_top += candidates(true, from);
+
+            for (int k = from; k < moves_top; k++) {
                 if (TEMPO_SCADUTO) {
                     break;
                 }
 
-                mark(c, B);
-                eval = Math.max(eval, alphaBeta(B, false, alpha, beta, depth - 1));
-                unmark(c, B);
-
+                eval = Math.max(eval, searchMove(B, true, k, from, alpha, beta, depth));
                 alpha = Math.max(alpha, eval);
 
-                if (alpha >= beta)
+                if (alpha >= beta) {
+                    betaCutoff(moves_stack[k], depth, k == from);
                     break;
+                }
             }
+            moves_top = from;
         } else {
             eval = +999;
-            MNKCell[] queue_moves = Q.moves();
 
-            if (queue_moves == null) {
+            if (Q.size() == 0) {
                 return 0;
             }
 
-            for (MNKCell c : queue_moves) {
+            int from = moves_top;
+            moves_top += candidates(false, from);
+
+            for (int k = from; k < moves_top; k++) {
 
                 if (TEMPO_SCADUTO) {
                     break;
                 }
-                mark(c, B);
-                eval = Math.min(eval, alphaBeta(B, true, alpha, beta, depth - 1));
-                unmark(c, B);
-
+                eval = Math.min(eval, searchMove(B, false, k, from, alpha, beta, depth));
                 beta = Math.min(beta, eval);
 
-                if (alpha >= beta)
+                if (alpha >= beta) {
+                    betaCutoff(moves_stack[k], depth, k == from);
                     break;
+                }
             }
+            moves_top = from;
         }
 
-        // Transposition table store
-        if (eval <= alphaOrig)
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.UPPERBOUND, eval, depth));
-        else if (eval >= betaOrig)
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.LOWERBOUND, eval, depth));
-        else
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.EXACT, eval, depth));
-
+        // Transposition table store (non per le ricerche interrotte dal timeout)
+        if (!TEMPO_SCADUTO)
+            ttStore(eval, depth, alphaOrig, betaOrig);
         return eval;
     }
 
-    private double alphaBetaStandard(MNKBoard B, boolean max_player, double alpha, double beta, int depth) {
-        MNKCell[] FC = B.getFreeCells();
-        double eval;
-        double alphaOrig = alpha, betaOrig = beta;
-
-        // Transposition table lookup
-        MNKBoardPlus ttEntry = tTable.get(current_hash);
-        if (ttEntry != null && ttEntry.depth >= depth) {
-            switch (ttEntry.flag) {
-                case EXACT: { return ttEntry.eval; }
-                case LOWERBOUND:
-                    alpha = Math.max(alpha, ttEntry.eval);
-                case UPPERBOUND:
-                    beta = Math.min(beta, ttEntry.eval);
-            } if (alpha >= beta) return ttEntry.eval;
-        }
-
-        if (depth == 0 || B.gameState() != MNKGameState.OPEN
-                || ((System.currentTimeMillis() - start) / 1000.0 > TIMEOUT * (99.0 / 100.0))) {
-            eval = eval(B);
-        } else if (!max_player) {
-            eval = -2;
-            for (MNKCell c : FC) {
-                B.markCell(c.i, c.j);
-                current_hash = current_hash ^ zobristHash(c, B);
+    /**
+     * Gioca la mossa moves_stack[k] (la (k - from)-esima in ordine) del nodo
+     * a profondità depth e ne restituisce il valore, applicando le late
+     * move reductions: da LMR_DEPTH in su, le mosse dopo le prime LMR_MOVES
+     * e quelle con priorità al più LMR_PRIORITY vengono cercate a profondità
+     * ridotta e con finestra nulla; solo se migliorano alpha (o beta, per
+     * min) vengono ricercate a profondità piena. Non vengono mai ridotte la
+     * prima mossa e le mosse che creano o bloccano una minaccia K-1.
+     * @param max_player True se la mossa è del giocatore max
+     */
+    private double searchMove(MNKBitBoard B, boolean max_player, int k, int from, double alpha, double beta, int depth) {
+        int x = moves_stack[k], late = k - from;
+        boolean reduce = depth >= LMR_DEPTH && late > 0 && (late >= LMR_MOVES || Q.getPriority(x) <= LMR_PRIORITY);
+
+        StrategySet own = max_player ? max : min, opp = max_player ? min : max;
+        int own_wins = own.winning(), opp_wins = opp.winning();
+        MNKCell c = B.cell(x);
+        mark(c, B);
+        reduce = reduce && own.winning() <= own_wins && opp.winning() >= opp_wins;
+
+        double value;
+        if (reduce) {
+            int r = late >= LMR_LATE_MOVES && depth > LMR_DEPTH ? 2 : 1;
+            stats.lmr_reductions++;
+            if (max_player)
+                value = alphaBeta(B, false, alpha, alpha + NULL_WINDOW, depth - 1 - r);
+            else
+                value = alphaBeta(B, true, beta - NULL_WINDOW, beta, depth - 1 - r);
+
+            if (max_player ? value > alpha : value < beta) {
+                stats.lmr_researches++;
+                value = alphaBeta(B, !max_player, alpha, beta, depth - 1);
+            }
+        } else {
+            value = alphaBeta(B, !max_player, alpha, beta, depth - 1);
+        }
 
-                eval = Math.max(eval, alphaBetaStandard(B, true, alpha, beta, depth - 1));
-                alpha = Math.max(eval, alpha);
+        unmark(c, B);
+        return value;
+    }
 
-                current_hash = current_hash ^ zobristHash(c, B);
-                B.unmarkCell();
+    /**
+     * Ricerca alla radice, a profondità depth e con finestra (alpha, beta).
+     * Le mosse vengono copiate su moves_stack; la mossa migliore
+     * dell'iterazione precedente, se presente, è esplorata per prima.
+     * Il risultato viene lasciato in root_move e root_score.
+     * Complessità: O(b^depth) nel caso pessimo, dove b è la dimensione di Q
+     * @return True se l'iterazione è stata completata; False se è stata
+     *      interrotta dal timeout (e il risultato va scartato)
+     */
+    private boolean parentAlphaBeta(MNKBitBoard B, int depth, double alpha, double beta) {
+        root_move  = -1;
+        root_score = -999;
+
+        reserve(Q.size());
+        int from = moves_top;
+        moves_top += Q.moves(moves_stack, from);
+        order(from, moves_top);
+
+        // Gli helper perturbano l'ordine delle mosse, per non ripetere
+        // esattamente la ricerca del thread principale
+        for (int i = from; helper_id > 0 && i < moves_top; i++) {
+            int j = i + rand.nextInt(Math.min(helper_id + 1, moves_top - i));
+            int tmp = moves_stack[i];
+            moves_stack[i] = moves_stack[j];
+            moves_stack[j] = tmp;
+        }
 
-                if (beta <= alpha) {
-                    break;
-                }
+        // La mossa migliore dell'iterazione precedente viene spostata in testa
+        for (int k = from; best_move != -1 && k < moves_top; k++)
+            if (moves_stack[k] == best_move) {
+                System.arraycopy(moves_stack, from, moves_stack, from + 1, k - from);
+                moves_stack[from] = best_move;
+                break;
             }
-        } else {
-            eval = 2;
-            for (MNKCell c : FC) {
-                B.markCell(c.i, c.j);
-                current_hash = current_hash ^ zobristHash(c, B);
 
-                eval = Math.min(eval, alphaBetaStandard(B, false, alpha, beta, depth - 1));
-                beta = Math.min(eval, beta);
+        for (int k = from; k < moves_top && !TEMPO_SCADUTO; k++) {
+            MNKCell c = B.cell(moves_stack[k]);
+            mark(c, B);
+            double eval = alphaBeta(B, false, alpha, beta, depth - 1);
+            unmark(c, B);
 
-                current_hash = current_hash ^ zobristHash(c, B);
-                B.unmarkCell();
+            // Il valore di una ricerca interrotta non è affidabile
+            if (TEMPO_SCADUTO)
+                break;
 
-                if (beta <= alpha) {
-                    break;
-                }
+            if (eval > root_score) {
+                root_score = eval;
+                root_move  = moves_stack[k];
             }
+            alpha = Math.max(alpha, eval);
+            if (alpha >= beta)
+                break;
         }
+        moves_top = from;
 
-        // Transposition table store
-        if (eval <= alphaOrig)
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.UPPERBOUND, eval, depth));
-        else if (eval >= betaOrig)
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.LOWERBOUND, eval, depth));
-        else
-            tTable.put(current_hash, new MNKBoardPlus(MNKBoardPlus.Flag.EXACT, eval, depth));
-
-        return eval;
+        return !TEMPO_SCADUTO && root_move != -1;
     }
 
-    private MNKCell parentAlphaBeta(MNKBoard B) {
-        double eval, best_eval = -999;
-        MNKCell[] FC = B.getFreeCells(), queue_moves = Q.moves();
-        MNKCell selected = FC[rand.nextInt(FC.length)];
-        if (queue_moves == null) {
-            return selected;
-        }
-        for (MNKCell c : queue_moves) {
-            if (TEMPO_SCADUTO) {
-                break;
+    /**
+     * Un'iterazione dell'iterative deepening, con il driver scelto:
+     * parentAlphaBeta con una finestra di aspirazione attorno al punteggio
+     * precedente (ripetuta con la finestra piena se il valore cade fuori),
+     * oppure MTD(f). Se completata, aggiorna best_move e best_score.
+     * @param first True per la prima iterazione, senza punteggio precedente
+     * @return True se l'iterazione è stata completata
+     */
+    private boolean iteration(MNKBitBoard B, int depth, boolean first) {
+        boolean completed;
+        if (use_mtdf) {
+            completed = mtdf(B, depth, first ? 0 : best_score);
+        } else {
+            double alpha = -1, beta = 1;
+            if (!first) {
+                alpha = Math.max(-1, best_score - ASPIRATION_WINDOW);
+                beta  = Math.min(+1, best_score + ASPIRATION_WINDOW);
             }
+            completed = parentAlphaBeta(B, depth, alpha, beta);
+            if (completed && (root_score <= alpha && alpha > -1 || root_score >= beta && beta < 1))
+                completed = parentAlphaBeta(B, depth, -1, 1); // Fail-low o fail-high: finestra piena
+        }
 
-            mark(c, B);
-            eval = alphaBeta(B, false, -1, 1, FC.length - 1);
+        if (completed) {
+            best_move  = root_move;
+            best_score = root_score;
+        }
+        return completed;
+    }
 
-            if (eval > best_eval) {
-                best_eval = eval;
-                selected = c;
+    /**
+     * MTD(f): restringe l'intervallo [lower, upper] che contiene il valore
+     * della configurazione con ricerche a finestra (beta - MTDF_WINDOW, beta),
+     * partendo da guess, finché non è ampio al più MTDF_WINDOW. Le ricerche
+     * ripetute si appoggiano sulla tabella delle trasposizioni.
+     * La mossa è quella dell'ultima ricerca fallita alta, cioè con valore
+     * almeno beta, o di quella che ha fatto convergere i limiti: una ricerca
+     * fallita bassa dice solo che nessuna mossa raggiunge beta, quindi la sua
+     * mossa non è affidabile. Se nessuna ricerca ha fornito una mossa si
+     * mantiene quella dell'iterazione precedente (best_move).
+     * Il risultato viene lasciato in root_move e root_score.
+     * Complessità: O(p*b^depth), dove p è il numero di ricerche
+     * @return True se l'iterazione è stata completata; False se è stata
+     *      interrotta dal timeout
+     */
+    private boolean mtdf(MNKBitBoard B, int depth, double guess) {
+        double lower = -1, upper = 1, g = guess;
+        int move = -1;
+        while (upper - lower > MTDF_WINDOW) {
+            double beta = Math.max(g, lower + MTDF_WINDOW);
+            if (!parentAlphaBeta(B, depth, beta - MTDF_WINDOW, beta))
+                return false;
+
+            g = root_score;
+            if (g >= beta) {
+                lower = g;
+                move  = root_move;
+            } else if (g <= beta - MTDF_WINDOW) {
+                upper = g;
+            } else {
+                lower = upper = g; // Valore esatto, dentro la finestra
+                move  = root_move;
             }
-
-            unmark(c, B);
         }
 
-        return selected;
+        if (move != -1)
+            root_move = move;
+        else if (best_move != -1)
+            root_move = best_move;
+        root_score = g;
+        return true;
     }
 
-    private MNKCell iterativeDeepening(MNKBoard B) {
-        MNKCell[] FC = B.getFreeCells();
-        int MAX_DEPTH = FC.length;
-        MNKCell c = FC[rand.nextInt(FC.length)];
-        for (int d = 0; d < MAX_DEPTH; d++) {
-            if (TEMPO_SCADUTO)
+    /**
+     * Iterative deepening: esegue iteration() a profondità 1, 2, ...
+     * finché c'è tempo, restituendo la mossa dell'ultima iterazione
+     * completata.
+     * Complessità: O(b^d), dove d è l'ultima profondità raggiunta
+     */
+    private MNKCell iterativeDeepening(MNKBitBoard B) {
+        int MAX_DEPTH = B.freeCount();
+        reserve(Q.size());
+        best_move  = Q.moves(moves_stack, moves_top) > 0 ? moves_stack[moves_top] : -1;
+        best_score = 0;
+
+        for (int d = 1; d <= MAX_DEPTH && !TEMPO_SCADUTO; d++) {
+            // Oltre la scadenza soft una nuova iterazione difficilmente terminerebbe
+            if (d > 1 && time.softExpired())
                 break;
-            c = parentAlphaBeta(B);
-        } return c;
-    }
 
-    @Override
-    public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
-        start = System.currentTimeMillis();
-        TEMPO_SCADUTO = false;
-        Timer timer = new Timer();
+            int depth = Math.min(d + depth_offset, MAX_DEPTH);
+            int previous_move = best_move;
+            double previous_score = best_score;
+            long iteration_start = System.nanoTime(), iteration_nodes = stats.nodes;
+            if (!iteration(B, depth, d == 1))
+                break;
+            stats.iteration(depth, System.nanoTime() - iteration_start, stats.nodes - iteration_nodes);
+            if (d > 1)
+                adjustTime(previous_move, previous_score);
 
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                TEMPO_SCADUTO = true;
-            }
-        }, (TIMEOUT) * 950);
-        long starting_hash = 0;
+            // Vittoria forzata: approfondire non cambierebbe la mossa
+            if (best_score >= 1)
+                break;
+        }
 
-        if (max.size()>max_set_size) {
-            max_set_size = max.size();
+        if (best_move == -1) {
+            MNKCell[] FC = B.getFreeCells();
+            return FC[rand.nextInt(FC.length)];
         }
+        return B.cell(best_move);
+    }
 
-        if (FC.length <= 16) {
-            // System.out.println("ALPHABETASTANDARD");
-            int pos = rand.nextInt(FC.length);
+    /**
+     * Porta la scacchiera di un helper alla configurazione di main,
+     * smarcando le mosse che main non ha e marcando quelle che le mancano.
+     * Complessità: O(m*K^2), dove m è il numero di mosse da smarcare e marcare
+     */
+    private void sync(MNKBitBoard main) {
+        int common = 0;
+        while (common < B.marked() && common < main.marked() && B.markedCell(common) == main.markedCell(common))
+            common++;
+
+        // Mosse non più presenti in main (ad esempio dopo analyse())
+        while (B.marked() > common)
+            unmark(B.cell(B.markedCell(B.marked() - 1)), B);
+        for (int k = B.marked(); k < main.marked(); k++)
+            mark(B.cell(main.markedCell(k)), B);
+    }
 
-            // add to the local board the last opponent move
-            if (MC.length > 0) {
-                MNKCell c = MC[MC.length - 1]; // Recover the last move from MC
-                B.markCell(c.i, c.j); // Save the last move in the local MNKBoard
-            }
+    /**
+     * Esegue iterativeDeepening sul thread principale e, in parallelo,
+     * sugli helper (Lazy SMP). La mossa restituita è sempre quella del
+     * thread principale: allo scadere del tempo gli helper vengono fermati
+     * e si attende che abbiano ripristinato le proprie scacchiere.
+     */
+    private MNKCell parallelSearch(MNKBitBoard B) {
+        for (int h = 0; h < helpers.length; h++) {
+            AlphaBetaPro helper = helpers[h];
+            helper.sync(B);
+            helper.TEMPO_SCADUTO = false;
+            futures[h] = pool.submit(() -> helper.iterativeDeepening(helper.B));
+        }
 
-            // If there is just one possible move, return immediately
-            if (FC.length == 1) {
-                timer.cancel();
-                return FC[0];
-            }
+        MNKCell c = iterativeDeepening(B);
 
-            // Check whether there is single move win
-            for (MNKCell c : FC) {
-                if (B.markCell(c.i, c.j) == myWin) {
-                    timer.cancel();
-                    return c;
-                } else
-                    B.unmarkCell();
+        for (AlphaBetaPro helper : helpers)
+            helper.TEMPO_SCADUTO = true;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Lazy SMP helper failed.", e);
             }
+        }
+        return c;
+    }
 
-            double score, maxEval = -2;
-            MNKCell result = FC[pos]; // random move
+    /**
+     * Avvia il pondering sulla configurazione attuale, in cui muove
+     * l'avversario. Va chiamata dal thread principale, a mossa giocata.
+     */
+    private void startPondering() {
+        if (B.gameState() != MNKGameState.OPEN)
+            return;
+
+        ponderer.sync(B);
+        int[] replies = new int[ponderer.Q.size()];
+        int n = Math.min(PONDER_REPLIES, ponderer.Q.moves(replies, 0));
+        if (n == 0)
+            return;
+
+        ponderer.TEMPO_SCADUTO = false;
+        tTable.newSearch();
+        pondering = ponder_pool.submit(() -> ponderer.ponder(replies, n));
+    }
 
-            for (int k = 0; k < FC.length; k++) {
-                // If time is running out, return the randomly selected cell
-                if (TEMPO_SCADUTO) {
-                    return result;
-                } else if (k != pos) {
-                    MNKCell d = FC[k];
-                    if (B.markCell(d.i, d.j) == yourWin) {
-                        B.unmarkCell(); // undo adversary move
-                        B.unmarkCell(); // undo my move
-                        B.markCell(d.i, d.j); // select his winning position
-                        timer.cancel();
-                        return d; // return his winning position
-                    } else {
-                        B.unmarkCell(); // undo adversary move to try a new one
-                    }
+    /**
+     * Ferma il pondering e attende che ponderer abbia ripristinato la
+     * propria scacchiera.
+     * @return True se il pondering era in corso
+     */
+    private boolean stopPondering() {
+        if (pondering == null)
+            return false;
+
+        ponderer.TEMPO_SCADUTO = true;
+        try {
+            pondering.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Pondering failed.", e);
+        }
+        pondering = null;
+        return true;
+    }
+
+    /**
+     * Corpo del pondering: approfondisce una profondità alla volta, a
+     * turno, le configurazioni che seguono ognuna delle risposte replies,
+     * finché non viene fermato da stopPondering() o dal proprio timeout.
+     * Complessità: O(n*b^d), dove d è l'ultima profondità raggiunta
+     * @param replies cellIndex delle risposte dell'avversario, in ordine di probabilità
+     * @param n       numero di risposte
+     */
+    private void ponder(int[] replies, int n) {
+        time.start();
+        stats.reset();
+        for (int depth = 1; depth < B.freeCount() && !TEMPO_SCADUTO; depth++)
+            for (int k = 0; k < n && !TEMPO_SCADUTO; k++) {
+                MNKCell c = B.cell(replies[k]);
+                mark(c, B);
+                if (B.gameState() == MNKGameState.OPEN) {
+                    best_move = -1;
+                    parentAlphaBeta(B, depth, -1, 1);
                 }
+                unmark(c, B);
             }
+    }
 
-            // System.out.println("celle libere: " + FC.length);
-            for (MNKCell currentCell : FC) {
-                // If time is running out, return the randomly selected cell
-                if (TEMPO_SCADUTO) {
-                    break;
-                } else {
-                    B.markCell(currentCell.i, currentCell.j);
+    /**
+     * Porta il giocatore, già inizializzato come giocatore di turno, nella
+     * configurazione MC (usato dai benchmark e da MNKBookGenerator).
+     */
+    void enter(MNKCell[] MC) {
+        for (MNKCell c : MC)
+            mark(B.cell(cellIndex(c)), B);
+    }
 
-                    score = alphaBetaStandard(B, true, -2, 2, FC.length);
+    /**
+     * Annulla enter(MC), ripristinando la configurazione di partenza.
+     */
+    void leave(MNKCell[] MC) {
+        for (int k = MC.length - 1; k >= 0; k--)
+            unmark(B.cell(cellIndex(MC[k])), B);
+    }
 
-                    if (score > maxEval) {
-                        maxEval = score;
-                        result = currentCell;
-                    }
+    /**
+     * Valutazione statica della configurazione attuale (usata dai benchmark).
+     */
+    double evaluate() {
+        return eval(B);
+    }
 
-                    B.unmarkCell();
-                }
-            }
+    /**
+     * Ricerca a profondità fissa usata dai benchmark: porta il giocatore,
+     * già inizializzato come giocatore di turno, nella configurazione MC,
+     * esegue parentAlphaBeta e ripristina la configurazione di partenza.
+     * @return nodi visitati
+     */
+    long benchmark(MNKCell[] MC, int depth) {
+        enter(MC);
 
-            B.markCell(result.i, result.j);
-            timer.cancel();
-            return result;
-        } else {
-            // Starting move: play in the middle of the board
-            if (MC.length == 0) {
+        time.start();
+        TEMPO_SCADUTO = false;
+        stats.reset();
+        best_move = -1;
+        parentAlphaBeta(B, depth, -1, 1);
+
+        leave(MC);
+        return stats.nodes;
+    }
+
+    /**
+     * Confronto tra i driver usato dai benchmark: come benchmark(), ma
+     * esegue le iterazioni 1, ..., depth dell'iterative deepening con il
+     * driver indicato, senza limiti di tempo.
+     * @return nodi visitati
+     */
+    long benchmarkDriver(MNKCell[] MC, int depth, boolean mtdf) {
+        enter(MC);
+
+        boolean driver = use_mtdf;
+        use_mtdf = mtdf;
+        time.start();
+        TEMPO_SCADUTO = false;
+        stats.reset();
+        best_move  = -1;
+        best_score = 0;
+        for (int d = 1; d <= depth; d++)
+            iteration(B, d, d == 1);
+        use_mtdf = driver;
+
+        leave(MC);
+        return stats.nodes;
+    }
+
+    /**
+     * Analisi usata da MNKBookGenerator: porta il giocatore, già
+     * inizializzato come giocatore di turno, nella configurazione MC, cerca
+     * la mossa migliore con il tempo di initPlayer e ripristina la
+     * configurazione di partenza.
+     * @return cellIndex della mossa migliore
+     */
+    int analyse(MNKCell[] MC) {
+        enter(MC);
+
+        time.start();
+        time.allocate(1);
+        TEMPO_SCADUTO = false;
+        stats.reset();
+        tTable.newSearch();
+
+        int x;
+        if (max.winning() >= 1 || min.winning() >= 1)
+            x = cellIndex(max.winning() >= 1 ? max.winningCell(B) : min.winningCell(B));
+        else if (Q.size() == 0)
+            x = (B.M / 2) * B.N + B.N / 2; // Come in selectCell: scacchiera vuota, si gioca al centro
+        else if ((x = vcf(max, min, VCF_ROOT_DEPTH)) == -1)
+            x = cellIndex(parallelSearch(B));
+
+        leave(MC);
+        return x;
+    }
+
+    /**
+     * Svuota la tabella delle trasposizioni (usato dai benchmark).
+     */
+    void clearTable() {
+        tTable.clear();
+    }
+
+    /**
+     * @return statistiche di ricerca dell'ultima selectCell, sommate su
+     *      tutti i thread
+     */
+    public SearchStatistics statistics() {
+        return stats;
+    }
 
-                MNKCell c = new MNKCell(B.M / 2, B.N / 2);
+    @Override
+    public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
+        time.start();
+        boolean pondered = stopPondering();
+        TEMPO_SCADUTO = false;
+        stats.reset();
+        for (AlphaBetaPro helper : helpers)
+            helper.stats.reset();
+        max.resetMaxSize();
+        min.resetMaxSize();
+        // Le entry del pondering appartengono già alla generazione di questa mossa
+        if (!pondered)
+            tTable.newSearch();
+        ageHistory();
+
+        MNKCell c = select(FC, MC);
+
+        for (AlphaBetaPro helper : helpers)
+            stats.add(helper.stats);
+        stats.elapsed_ns   = time.elapsedNanos();
+        stats.max_set      = max.size();
+        stats.min_set      = min.size();
+        stats.max_set_peak = max.maxSize();
+        stats.min_set_peak = min.maxSize();
+        if (stats_log != null)
+            stats_log.println(stats.toJson());
+
+        if (ponderer != null)
+            startPondering();
+        return c;
+    }
+
+    private MNKCell select(MNKCell[] FC, MNKCell[] MC) {
+        long starting_hash = 0;
 
+        // Retrieve adversary move (e tutte le mosse non ancora sulla scacchiera
+        // locale, ad esempio un'apertura imposta da MNKArena)
+        for (int k = B.marked(); k < MC.length; k++)
+            mark(B.cell(cellIndex(MC[k])), B);
+        starting_hash = zobrist.hash();
+
+        // Finale: risoluzione esatta; se non termina in tempo si prosegue con la ricerca euristica
+        if (FC.length <= ENDGAME_CELLS) {
+            if (solver == null)
+                solver = new EndgameSolver(B.M, B.N, B.K);
+            time.allocate(1);
+            int x = solver.solve(B, time);
+            stats.nodes += solver.nodes();
+            if (x != -1) {
+                MNKCell c = B.cell(x);
                 mark(c, B);
-                timer.cancel();
                 return c;
             }
+        }
 
-            // Retrieve adversary move
-            if (MC.length > 0) {
-                MNKCell c = MC[MC.length - 1];
+        // Opening book: le mosse sono salvate rispetto alla configurazione canonica
+        int book_move = book == null ? -1 : book.probe(zobrist.canonical());
+        if (book_move >= 0 && book_move < B.M * B.N) {
+            MNKCell c = B.cell(zobrist.fromCanonical(zobrist.canonicalSymmetry(), book_move));
+            if (B.cellState(c.i, c.j) == MNKCellState.FREE) {
                 mark(c, B);
-                starting_hash = current_hash;
+                return c;
             }
+        }
 
-            if (MC.length == 1) {
-                MNKCell c = MC[0];
-                if (c.i + 1 < B.M && c.j + 1 < B.N && B.cellState(c.i + 1, c.j + 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i + 1, c.j + 1);
-                    mark(d, B);
-                    return d;
-                } else if (c.i - 1 >= 0 && c.j - 1 >= 0 && B.cellState(c.i - 1, c.j - 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i - 1, c.j - 1);
-                    mark(d, B);
-                    return d;
-                } else if (c.i - 1 >= 0 && c.j + 1 < B.N && B.cellState(c.i - 1, c.j + 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i - 1, c.j + 1);
-                    mark(d, B);
-                    return d;
-                } else if (c.i + 1 < B.M && c.j - 1 >= 0 && B.cellState(c.i + 1, c.j - 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i + 1, c.j - 1);
-                    mark(d, B);
-                    return d;
-                }
-            }
+        // Starting move: play in the middle of the board
+        if (MC.length == 0) {
 
-            if (MC.length == 2) {
-                MNKCell c = MC[0];
+            MNKCell c = new MNKCell(B.M / 2, B.N / 2);
 
-                if (B.cellState(c.i + 1, c.j + 1) == MNKCellState.FREE
-                        && B.cellState(c.i - 1, c.j - 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i + 1, c.j + 1);
-                    mark(d, B);
-                    timer.cancel();
-                    return d;
-                }
+            mark(c, B);
+            return c;
+        }
 
-                if (B.cellState(c.i - 1, c.j - 1) == MNKCellState.FREE
-                        && B.cellState(c.i + 1, c.j + 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i - 1, c.j - 1);
-                    mark(d, B);
-                    timer.cancel();
-                    return d;
-                }
+        if (MC.length == 1) {
+            MNKCell c = MC[0];
+            if (c.i + 1 < B.M && c.j + 1 < B.N && B.cellState(c.i + 1, c.j + 1) == MNKCellState.FREE) {
+                MNKCell d = new MNKCell(c.i + 1, c.j + 1);
+                mark(d, B);
+                return d;
+            } else if (c.i - 1 >= 0 && c.j - 1 >= 0 && B.cellState(c.i - 1, c.j - 1) == MNKCellState.FREE) {
+                MNKCell d = new MNKCell(c.i - 1, c.j - 1);
+                mark(d, B);
+                return d;
+            } else if (c.i - 1 >= 0 && c.j + 1 < B.N && B.cellState(c.i - 1, c.j + 1) == MNKCellState.FREE) {
+                MNKCell d = new MNKCell(c.i - 1, c.j + 1);
+                mark(d, B);
+                return d;
+            } else if (c.i + 1 < B.M && c.j - 1 >= 0 && B.cellState(c.i + 1, c.j - 1) == MNKCellState.FREE) {
+                MNKCell d = new MNKCell(c.i + 1, c.j - 1);
+                mark(d, B);
+                return d;
+            }
+        }
 
-                if (B.cellState(c.i - 1, c.j + 1) == MNKCellState.FREE
-                        && B.cellState(c.i + 1, c.j - 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i - 1, c.j + 1);
-                    mark(d, B);
-                    timer.cancel();
-                    return d;
-                }
+        if (MC.length == 2) {
+            MNKCell c = MC[0];
 
-                if (B.cellState(c.i + 1, c.j - 1) == MNKCellState.FREE
-                        && B.cellState(c.i - 1, c.j + 1) == MNKCellState.FREE) {
-                    MNKCell d = new MNKCell(c.i + 1, c.j - 1);
-                    mark(d, B);
-                    timer.cancel();
-                    return d;
-                }
+            if (isFree(c.i + 1, c.j + 1)
+                    && isFree(c.i - 1, c.j - 1)) {
+                MNKCell d = new MNKCell(c.i + 1, c.j + 1);
+                mark(d, B);
+                return d;
             }
 
-            // One-move win/lose check
-            if (max.winning() >= 1 || min.winning() >= 1) {
-                MNKCell c = max.winning() >= 1 ? max.winningCell(B) : min.winningCell(B);
-                mark(c, B);
-                timer.cancel();
-                return c;
+            if (isFree(c.i - 1, c.j - 1)
+                    && isFree(c.i + 1, c.j + 1)) {
+                MNKCell d = new MNKCell(c.i - 1, c.j - 1);
+                mark(d, B);
+                return d;
             }
 
-            MNKCell[] queue_moves = Q.moves();
-            // Q.printQueue();
-            if (queue_moves != null && MC.length >= 3) {
-                // se vinciamo in due modi diversi
-                for (MNKCell mossa : queue_moves) {
-                    // System.out.println("------------------------------------------------");
-                    // System.out.println("Sto analizzando la casella: [" + mossa.i + "," + mossa.j
-                    // + "]");
-                    // B.markCell(mossa.i, mossa.j);
-                    mark(mossa, B);
-                    int strategie_vincenti = 0;
-                    for (MNKStrategy s : max.getStrategie(mossa)) {
-                        // System.out.println(s);
-
-                        if (s.winning()) {
-                            strategie_vincenti++;
-                        }
-
-                        if (strategie_vincenti == 2) {
-                            timer.cancel();
-                            return mossa;
-                        }
-                    }
-                    // B.unmarkCell();
-                    unmark(mossa, B);
-                }
-
-                // se vinciamo in una mossa
-                for (MNKCell mossa : queue_moves) {
-                    // System.out.println("------------------------------------------------");
-                    // System.out.println("Sto analizzando la casella: [" + mossa.i + "," + mossa.j
-                    // + "]");
-                    // B.markCell(mossa.i, mossa.j);
-                    mark(mossa, B);
-                    int strategie_vincenti = 0;
-                    for (MNKStrategy s : max.getStrategie(mossa)) {
-                        if (s.winning()) {
-                            // System.out.println("La strategia " + s + " è vincente");
-                            timer.cancel();
-                            return mossa;
-                        }
-                    }
-                    // B.unmarkCell();
-                    unmark(mossa, B);
-                }
-
-                // Se perdiamo in due modi diversi
-                for (MNKCell mossa : queue_moves) {
-                    // System.out.println("------------------------------------------------");
-                    mark(mossa, B);
-                    for (MNKCell mossa_avversario : queue_moves) {
-                        if ((mossa.i != mossa_avversario.i) || (mossa.j != mossa_avversario.j)) {
-                            mark(mossa_avversario, B);
-                            int strategie_vincenti = 0;
-                            for (MNKStrategy s : min.getStrategie(mossa_avversario)) {
-
-                                if (s.winning()) {
-                                    strategie_vincenti++;
-                                }
-                                if (strategie_vincenti == 2) {
-                                    unmark(mossa_avversario, B);
-                                    unmark(mossa, B);
-                                    mark(mossa_avversario, B);
-                                    timer.cancel();
-                                    return mossa_avversario;
-                                }
-                            }
-                            unmark(mossa_avversario, B);
-                        }
-                    }
-                    unmark(mossa, B);
-                }
+            if (isFree(c.i - 1, c.j + 1)
+                    && isFree(c.i + 1, c.j - 1)) {
+                MNKCell d = new MNKCell(c.i - 1, c.j + 1);
+                mark(d, B);
+                return d;
+            }
 
+            if (isFree(c.i + 1, c.j - 1)
+                    && isFree(c.i - 1, c.j + 1)) {
+                MNKCell d = new MNKCell(c.i + 1, c.j - 1);
+                mark(d, B);
+                return d;
             }
+        }
+
+        // One-move win/lose check
+        if (max.winning() >= 1 || min.winning() >= 1) {
+            MNKCell c = max.winning() >= 1 ? max.winningCell(B) : min.winningCell(B);
+            mark(c, B);
+            return c;
+        }
 
-            MNKCell c = iterativeDeepening(B);
+        // Vittoria forzata con una sequenza di minacce (VCF)
+        int vcf_move = vcf(max, min, VCF_ROOT_DEPTH);
+        if (vcf_move != -1) {
+            MNKCell c = B.cell(vcf_move);
             mark(c, B);
-            if ((starting_hash ^ zobristHash(c, B)) != current_hash)
-                throw new IllegalStateException("Error in hashing!");
             return c;
         }
+
+        // Minacce doppie e semplici, dai conteggi di countThreats: una mossa
+        // vale quante celle vincenti distinte crea (al più 2). Le mosse
+        // sono esaminate nell'ordine della coda, in O(q + s*K) invece di
+        // marcare e smarcare ogni coppia di mosse
+        if (Q.size() > 0 && MC.length >= 3) {
+            reserve(Q.size());
+            int from = moves_top, n = Q.moves(moves_stack, from);
+            moves_top += n;
+
+            // se vinciamo in due modi diversi
+            int x = threatMove(max, from, n, 2);
+            // se creiamo una minaccia vincente
+            if (x == -1)
+                x = threatMove(max, from, n, 1);
+            // se l'avversario vince in due modi diversi, occupiamo la cella
+            if (x == -1)
+                x = threatMove(min, from, n, 2);
+
+            moves_top = from;
+            if (x != -1) {
+                MNKCell c = B.cell(x);
+                mark(c, B);
+                return c;
+            }
+        }
+
+        base_complexity = complexity();
+        instability     = 0;
+        time.allocate(base_complexity);
+        MNKCell c = parallelSearch(B);
+        base_complexity = -1;
+        mark(c, B);
+        if ((starting_hash ^ zobristHash(c, B)) != zobrist.hash())
+            throw new IllegalStateException("Error in hashing!");
+        return c;
     }
 
     @Override
@@ -589,12 +1510,12 @@ class AlphaBetaPro implements MNKPlayer {
         return "AlphaBetaPro";
     }
 
-    public static void print(MNKBoard B) {
+    public static void print(MNKBitBoard B) {
         for (int i = 0; i < B.M; i++) {
             for (int j = 0; j < B.N; j++) {
-                if (B.B[i][j] == MNKCellState.FREE)
+                if (B.cellState(i, j) == MNKCellState.FREE)
                     System.out.print("/ ");
-                else if (B.B[i][j] == MNKCellState.P1)
+                else if (B.cellState(i, j) == MNKCellState.P1)
                     System.out.print("X ");
                 else
                     System.out.print("O ");
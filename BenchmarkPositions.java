@@ -0,0 +1,53 @@
+package mnkgame;
+
+import java.util.Random;
+
+/**
+ *  Posizioni fisse, generate da un seme, su cui misurano il motore i
+ *  benchmark JMH (modulo benchmarks) e MNKAllocationCheck: stesse mosse
+ *  e stessa profondità di ricerca per una configurazione (M,N,K), così le
+ *  misure sono confrontabili tra esecuzioni e tra versioni.
+ */
+final class BenchmarkPositions {
+    static final long SEED = 2022;
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     *  Complessità: O(M*N*K) per la costruzione della scacchiera
+     *  @return posizione fissa per (M,N,K): mosse casuali, ma riproducibili,
+     *      nel quadrato di lato 2K al centro della scacchiera, senza che
+     *      la partita termini
+     */
+    static MNKCell[] position(int M, int N, int K) {
+        Random rand = new Random(SEED);
+        MNKBitBoard B = new MNKBitBoard(M, N, K);
+        int moves = Math.min(2 * K, M * N / 4);
+        int side = Math.min(2 * K, Math.min(M, N));
+        int i0 = (M - side) / 2, j0 = (N - side) / 2;
+
+        MNKCell[] MC = new MNKCell[moves];
+        for (int n = 0; n < moves; ) {
+            int i = i0 + rand.nextInt(side), j = j0 + rand.nextInt(side);
+            if (B.cellState(i, j) != MNKCellState.FREE)
+                continue;
+            if (B.markCell(i, j) != MNKGameState.OPEN) {
+                B.unmarkCell();
+                continue;
+            }
+            MC[n++] = new MNKCell(i, j);
+        }
+        return MC;
+    }
+
+    /**
+     *  @return profondità della ricerca per (M,N,K), scelta perché una
+     *      ricerca duri da qualche decina a qualche centinaio di millisecondi
+     */
+    static int depth(int M, int N, int K) {
+        if (M * N <= 16)
+            return M * N;
+        return M * N <= 100 ? 4 : 3;
+    }
+}
@@ -0,0 +1,165 @@
+package mnkgame;
+
+import java.util.Arrays;
+
+/**
+ *  Regione rettangolare della scacchiera su cui sono indicizzate le
+ *  strutture per cella (o per finestra) di ricerca e valutazione: al posto
+ *  di array di M*N posizioni, array di area() posizioni, che crescono con
+ *  le celle marcate invece che con l'area della scacchiera.
+ *
+ *  La regione parte vuota (o, sulle scacchiere fino a FULL_CELLS celle,
+ *  coincide con la scacchiera) e cover() la allarga fino a contenere un
+ *  quadrato attorno a una cella, con un margine aggiuntivo proporzionale
+ *  alla regione stessa: gli allargamenti sono O(log) e il loro costo,
+ *  lineare nell'area, è ammortizzato. Dopo un allargamento chi possiede gli
+ *  array li rimappa con grow(), che conosce la geometria precedente.
+ *
+ *  Una cella x (cellIndex) è in posizione index(x) = (i - top) * cols + (j - left).
+ */
+public final class BoardRegion {
+    /**
+     *  Numero di celle fino al quale la regione copre subito tutta la
+     *  scacchiera: gli array restano piccoli e l'indice è quello della cella.
+     */
+    public static final int FULL_CELLS = 1024;
+
+    public final int M, N;
+
+    private int top, left, rows, cols;
+
+    /**
+     *  Geometria precedente all'ultimo allargamento, letta da grow().
+     */
+    private int old_top, old_left, old_rows, old_cols;
+
+    /**
+     *  Complessità: O(1)
+     */
+    public BoardRegion(int M, int N) {
+        this.M = M;
+        this.N = N;
+        if (M * N <= FULL_CELLS) {
+            rows = M;
+            cols = N;
+        }
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di celle della regione
+     */
+    public int area() {
+        return rows * cols;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param x cellIndex
+     *  @return posizione della cella x negli array della regione, oppure
+     *      -1 se x è fuori dalla regione
+     */
+    public int index(int x) {
+        if (cols == N) {
+            int k = x - top * N;
+            return k >= 0 && k < rows * N ? k : -1;
+        }
+        int i = x / N - top, j = x % N - left;
+        return i >= 0 && i < rows && j >= 0 && j < cols ? i * cols + j : -1;
+    }
+
+    /**
+     *  Allarga la regione, se serve, fino a contenere le celle a distanza
+     *  (di Chebyshev) al più r dalla cella x, limitate alla scacchiera.
+     *  Complessità: O(1)
+     *  @return True se la regione è cambiata: gli array vanno rimappati con grow()
+     */
+    public boolean cover(int x, int r) {
+        int i = x / N, j = x % N;
+        int i0 = Math.max(0, i - r), i1 = Math.min(M, i + r + 1);
+        int j0 = Math.max(0, j - r), j1 = Math.min(N, j + r + 1);
+        if (rows > 0 && i0 >= top && i1 <= top + rows && j0 >= left && j1 <= left + cols)
+            return false;
+
+        old_top  = top;
+        old_left = left;
+        old_rows = rows;
+        old_cols = cols;
+        if (rows > 0) {
+            // Margine aggiuntivo di metà della regione sui lati che crescono
+            if (i0 < top)           i0 = Math.max(0, Math.min(i0, top - rows / 2));
+            if (i1 > top + rows)    i1 = Math.min(M, Math.max(i1, top + rows + rows / 2));
+            if (j0 < left)          j0 = Math.max(0, Math.min(j0, left - cols / 2));
+            if (j1 > left + cols)   j1 = Math.min(N, Math.max(j1, left + cols + cols / 2));
+            i0 = Math.min(i0, top);
+            i1 = Math.max(i1, top + rows);
+            j0 = Math.min(j0, left);
+            j1 = Math.max(j1, left + cols);
+        }
+        top  = i0;
+        left = j0;
+        rows = i1 - i0;
+        cols = j1 - j0;
+        return true;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param r posizione nella regione, in [0, area())
+     *  @return cellIndex della cella in posizione r
+     */
+    public int cell(int r) {
+        return (top + r / cols) * N + left + r % cols;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param r posizione nella regione precedente all'ultimo allargamento
+     *  @return posizione della stessa cella nella regione attuale
+     */
+    public int moved(int r) {
+        return (old_top + r / old_cols - top) * cols + (old_left + r % old_cols - left);
+    }
+
+    /**
+     *  Rimappa un array indicizzato sulla regione precedente all'ultimo
+     *  allargamento, con stride posizioni per cella; le posizioni nuove
+     *  valgono fill.
+     *  Complessità: O(area() * stride)
+     */
+    public int[] grow(int[] a, int stride, int fill) {
+        int[] b = new int[area() * stride];
+        if (fill != 0)
+            Arrays.fill(b, fill);
+        copy(a, b, stride);
+        return b;
+    }
+
+    /**
+     *  Come grow(int[], int, int), per array di long.
+     */
+    public long[] grow(long[] a, int stride, long fill) {
+        long[] b = new long[area() * stride];
+        if (fill != 0)
+            Arrays.fill(b, fill);
+        copy(a, b, stride);
+        return b;
+    }
+
+    /**
+     *  Come grow(int[], int, int), per array di boolean: le posizioni nuove valgono false.
+     */
+    public boolean[] grow(boolean[] a, int stride) {
+        boolean[] b = new boolean[area() * stride];
+        copy(a, b, stride);
+        return b;
+    }
+
+    /**
+     *  Copia le righe della regione precedente dall'array a all'array b.
+     */
+    private void copy(Object a, Object b, int stride) {
+        for (int i = 0; i < old_rows; i++)
+            System.arraycopy(a, i * old_cols * stride, b, moved(i * old_cols) * stride, old_cols * stride);
+    }
+}
@@ -0,0 +1,358 @@
+package mnkgame;
+
+import java.util.Arrays;
+
+/**
+ *  Risolutore esatto dei finali, usato da AlphaBetaPro quando restano al
+ *  più MAX_CELLS celle libere. Il risultato (vittoria, patta o sconfitta
+ *  per il giocatore di turno) è esatto, non una valutazione euristica.
+ *
+ *  Le celle libere ricevono un indice locale in [0, F) e la posizione è
+ *  rappresentata da due maschere di bit (int), una per giocatore, con le
+ *  sole celle libere all'inizio della risoluzione. Per ogni giocatore
+ *  vengono precalcolate le finestre ancora vincibili (senza simboli
+ *  dell'avversario), come maschere delle celle libere che mancano per
+ *  completarle: la vittoria si riconosce con un AND e un confronto.
+ *  Per ogni finestra si mantiene il numero di simboli avversari posati
+ *  durante la ricerca, così un giocatore senza finestre vive non può più
+ *  vincere e la ricerca si ferma sulla patta.
+ *
+ *  La tabella delle trasposizioni è indirizzata dalla coppia di maschere,
+ *  che entra in un long e viene salvata per intero: non ci sono
+ *  collisioni tra configurazioni diverse.
+ */
+public final class EndgameSolver {
+    /**
+     *  Numero massimo di celle libere: le due maschere occupano un long.
+     */
+    public static final int MAX_CELLS = 32;
+
+    public static final int WIN = 1, DRAW = 0, LOSS = -1;
+
+    private static final int EXACT = 0, LOWERBOUND = 1, UPPERBOUND = 2;
+
+    /**
+     *  Numero di entry della tabella delle trasposizioni (potenza di 2).
+     */
+    private static final int TT_SIZE = 1 << 20;
+
+    private final int K;
+
+    /**
+     *  cell[x] è il cellIndex della cella locale x.
+     */
+    private final int[] cell = new int[MAX_CELLS];
+    private int F, full;
+
+    /**
+     *  Celle locali in ordine decrescente di finestre vive che le contengono.
+     */
+    private final int[] order = new int[MAX_CELLS];
+
+    /**
+     *  Per ogni giocatore p: window[p][w] maschera delle celle libere della
+     *  finestra w; killed[p][w] simboli dell'avversario posati in w;
+     *  alive[p] finestre con killed 0. Le finestre della cella locale x
+     *  sono incidence[p][x][0] ... incidence[p][x][degree[p][x] - 1].
+     */
+    private final int[][] window = new int[2][], killed = new int[2][];
+    private final int[] windows = new int[2], alive = new int[2];
+    private final int[][][] incidence;
+    private final int[][] degree = new int[2][MAX_CELLS];
+
+    private final int[] stones = new int[2];
+
+    /**
+     *  Tabella delle trasposizioni: keys[h] è la coppia di maschere,
+     *  data[h] impacchetta valore + 1 (bit 0-1), flag (bit 2-3), validità
+     *  (bit 4) e mossa migliore (bit 8-15).
+     */
+    private final long[] keys = new long[TT_SIZE];
+    private final int[] data = new int[TT_SIZE];
+    private static final int VALID = 1 << 4;
+
+    private TimeManager time;
+    private boolean aborted;
+    private long nodes;
+    private int value;
+
+    /**
+     *  Buffer per le finestre passanti per una cella, lette dalla WindowTable.
+     */
+    private final int[] windows_buf;
+
+    /**
+     *  Le finestre vincibili contengono almeno una cella libera, che ne ha
+     *  al più 4*K: sono al più MAX_CELLS*4*K, qualunque sia la scacchiera.
+     *  Complessità: O(TT_SIZE + K)
+     */
+    public EndgameSolver(int M, int N, int K) {
+        this.K      = K;
+        incidence   = new int[2][MAX_CELLS][4 * K];
+        windows_buf = new int[4 * K];
+        int n       = MAX_CELLS * 4 * K;
+        for (int p = 0; p < 2; p++) {
+            window[p] = new int[n];
+            killed[p] = new int[n];
+        }
+    }
+
+    /**
+     *  Risolve la configurazione B per il giocatore di turno, fermandosi
+     *  alla scadenza soft di time.
+     *  Complessità: O(3^F) nel caso pessimo, dove F è il numero di celle libere
+     *  @return cellIndex della mossa migliore, oppure -1 se la ricerca è
+     *      stata interrotta, le celle libere sono più di MAX_CELLS o la
+     *      partita è già terminata
+     */
+    public int solve(MNKBitBoard B, TimeManager time) {
+        nodes = 0;
+        if (B.gameState() != MNKGameState.OPEN || B.freeCount() > MAX_CELLS)
+            return -1;
+
+        this.time = time;
+        aborted   = false;
+        load(B);
+        Arrays.fill(data, 0);
+
+        int side = B.currentPlayer();
+        int best = -1, alpha = LOSS, beta = WIN;
+        value = LOSS;
+
+        int threats = threats(1 - side);
+        for (int k = 0; k < F; k++) {
+            int x = order[k];
+            if (wins(side, x)) {
+                value = WIN;
+                return cell[x];
+            }
+        }
+        for (int k = 0; k < F; k++) {
+            int x = order[k];
+            if (threats != 0 && (threats & 1 << x) == 0)
+                continue;
+            place(side, x);
+            int v = -search(1 - side, -beta, -alpha);
+            remove(side, x);
+            if (aborted)
+                return -1;
+            if (best == -1 || v > value) {
+                value = v;
+                best  = x;
+            }
+            alpha = Math.max(alpha, v);
+            if (alpha >= beta)
+                break;
+        }
+        return cell[best];
+    }
+
+    /**
+     *  @return valore dell'ultima risoluzione completata, per il giocatore
+     *      che doveva muovere: WIN, DRAW o LOSS
+     */
+    public int value() {
+        return value;
+    }
+
+    /**
+     *  @return nodi visitati dall'ultima risoluzione
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     *  Numera le celle libere e costruisce le finestre vincibili, visitando
+     *  solo le finestre delle celle libere: ogni finestra viene contata una
+     *  volta, alla sua prima cella libera. Celle e finestre crescono lungo
+     *  la finestra, come i cellIndex e quindi gli indici locali.
+     *  Complessità: O(M*N + F*K^2), dove M*N è la scansione delle celle
+     *  libere, fatta quando la scacchiera è quasi piena
+     */
+    private void load(MNKBitBoard B) {
+        F = 0;
+        for (int x = 0; x < B.M * B.N && F < MAX_CELLS; x++) {
+            MNKCell c = B.cell(x);
+            if (B.cellState(c.i, c.j) == MNKCellState.FREE)
+                cell[F++] = x;
+        }
+        full = F == 32 ? -1 : (1 << F) - 1;
+        stones[0] = stones[1] = 0;
+
+        WindowTable W = WindowTable.get(B.M, B.N, B.K);
+        int[] weight = new int[F];
+        for (int p = 0; p < 2; p++) {
+            MNKCellState mine = p == 0 ? MNKCellState.P1 : MNKCellState.P2;
+            Arrays.fill(degree[p], 0);
+            windows[p] = 0;
+            for (int f = 0; f < F; f++) {
+                int n = W.windows(cell[f], windows_buf, 0);
+                for (int t = 0; t < n; t++) {
+                    int w = windows_buf[t], mask = 0;
+                    boolean blocked = false;
+                    for (int k = 0; k < K && !blocked; k++) {
+                        int x = W.cell(w, k);
+                        MNKCell c = B.cell(x);
+                        MNKCellState state = B.cellState(c.i, c.j);
+                        if (state == MNKCellState.FREE)
+                            mask |= 1 << Arrays.binarySearch(cell, 0, F, x);
+                        else if (state != mine)
+                            blocked = true;
+                    }
+                    if (blocked || Integer.numberOfTrailingZeros(mask) != f)
+                        continue;
+
+                    int id = windows[p]++;
+                    window[p][id] = mask;
+                    killed[p][id] = 0;
+                    for (int m = mask; m != 0; m &= m - 1) {
+                        int x = Integer.numberOfTrailingZeros(m);
+                        incidence[p][x][degree[p][x]++] = id;
+                        weight[x]++;
+                    }
+                }
+            }
+            alive[p] = windows[p];
+        }
+
+        // Ordinamento statico: prima le celle con più finestre vive
+        for (int k = 0; k < F; k++) {
+            int x = k, j = k;
+            while (j > 0 && weight[order[j - 1]] < weight[x]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = x;
+        }
+    }
+
+    private void place(int side, int x) {
+        stones[side] |= 1 << x;
+        int opp = 1 - side;
+        for (int k = 0; k < degree[opp][x]; k++)
+            if (killed[opp][incidence[opp][x][k]]++ == 0)
+                alive[opp]--;
+    }
+
+    private void remove(int side, int x) {
+        stones[side] &= ~(1 << x);
+        int opp = 1 - side;
+        for (int k = 0; k < degree[opp][x]; k++)
+            if (--killed[opp][incidence[opp][x][k]] == 0)
+                alive[opp]++;
+    }
+
+    /**
+     *  Complessità: O(K)
+     *  @return True se side vince marcando la cella locale x
+     */
+    private boolean wins(int side, int x) {
+        int own = stones[side] | 1 << x;
+        for (int k = 0; k < degree[side][x]; k++) {
+            int w = incidence[side][x][k];
+            if (killed[side][w] == 0 && (window[side][w] & ~own) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Complessità: O(F*K)
+     *  @return maschera delle celle libere con cui side vincerebbe
+     */
+    private int threats(int side) {
+        int threats = 0;
+        for (int m = full & ~(stones[0] | stones[1]); m != 0; m &= m - 1) {
+            int x = Integer.numberOfTrailingZeros(m);
+            if (wins(side, x))
+                threats |= 1 << x;
+        }
+        return threats;
+    }
+
+    private int slot(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key >>> 44) & (TT_SIZE - 1);
+    }
+
+    /**
+     *  Negamax con potatura alpha-beta sui tre valori WIN, DRAW e LOSS.
+     *  @return valore della configurazione per side, il giocatore di turno
+     */
+    private int search(int side, int alpha, int beta) {
+        if ((++nodes & TimeManager.CHECK_MASK) == 0 && time.softExpired())
+            aborted = true;
+        if (aborted)
+            return DRAW;
+
+        int free = full & ~(stones[0] | stones[1]);
+        if (free == 0)
+            return DRAW;
+
+        // Vittoria immediata; più minacce dell'avversario sono una sconfitta
+        int opp = 1 - side;
+        int threats = 0;
+        for (int m = free; m != 0; m &= m - 1) {
+            int x = Integer.numberOfTrailingZeros(m);
+            if (wins(side, x))
+                return WIN;
+            if (wins(opp, x))
+                threats |= 1 << x;
+        }
+        if (Integer.bitCount(threats) > 1)
+            return LOSS;
+
+        // Chi non ha più finestre vive non può vincere
+        if (alive[side] == 0)
+            beta = Math.min(beta, DRAW);
+        if (alive[opp] == 0)
+            alpha = Math.max(alpha, DRAW);
+        if (alpha >= beta)
+            return alpha;
+
+        int alphaOrig = alpha, betaOrig = beta;
+        long key = (long) stones[0] << 32 | stones[1] & 0xFFFFFFFFL;
+        int h = slot(key), tt_move = -1;
+        if ((data[h] & VALID) != 0 && keys[h] == key) {
+            int v = (data[h] & 3) - 1;
+            switch ((data[h] >>> 2) & 3) {
+                case EXACT:
+                    return v;
+                case LOWERBOUND:
+                    alpha = Math.max(alpha, v);
+                    break;
+                case UPPERBOUND:
+                    beta = Math.min(beta, v);
+                    break;
+            }
+            if (alpha >= beta)
+                return v;
+            tt_move = data[h] >>> 8;
+        }
+
+        // Con una minaccia avversaria l'unica mossa è bloccarla
+        int moves = threats != 0 ? threats : free;
+        int best = LOSS - 1, best_move = -1;
+        for (int k = -1; k < F && alpha < beta; k++) {
+            int x = k == -1 ? tt_move : order[k];
+            if (x == -1 || (moves & 1 << x) == 0 || (k >= 0 && x == tt_move))
+                continue;
+            place(side, x);
+            int v = -search(opp, -beta, -alpha);
+            remove(side, x);
+            if (aborted)
+                return DRAW;
+            if (v > best) {
+                best      = v;
+                best_move = x;
+            }
+            alpha = Math.max(alpha, v);
+        }
+
+        int flag = best <= alphaOrig ? UPPERBOUND : best >= betaOrig ? LOWERBOUND : EXACT;
+        keys[h] = key;
+        data[h] = VALID | best_move << 8 | flag << 2 | (best + 1);
+        return best;
+    }
+}
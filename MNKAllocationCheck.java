@@ -0,0 +1,130 @@
+package mnkgame;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ *  Verifica che AlphaBetaPro non allochi memoria durante il gioco: dopo il
+ *  riscaldamento, una selectCell completa (finale, opening book, VCF alla
+ *  radice, threatMove e iterative deepening) deve allocare 0 byte.
+ *
+ *  Per ogni configurazione selectCell parte sempre dalla posizione fissa
+ *  di BenchmarkPositions: dopo ogni chiamata la mossa scelta viene
+ *  annullata con leave(). Le strutture che crescono con la ricerca
+ *  (StrategySet, MovesQueue, region, stack e killer) raddoppiano quando
+ *  servono, quindi possono allocare anche dopo le prime chiamate, sempre
+ *  più di rado: il riscaldamento continua finché CLEAN_RUNS chiamate
+ *  consecutive non allocano, al più per MAX_WARMUP_RUNS chiamate. Poi si
+ *  misurano RUNS chiamate e conta il minimo: una regressione alloca a ogni
+ *  chiamata, mentre una compilazione JIT o una deottimizzazione che cade
+ *  dentro una selectCell breve alloca una volta sola. I byte sono quelli
+ *  allocati dal thread corrente, letti da com.sun.management.ThreadMXBean.
+ *
+ *  La ricerca usa un solo thread: con gli helper Lazy SMP ogni mossa
+ *  alloca i task del pool.
+ *
+ *  Il processo termina con codice 1 se almeno una configurazione alloca,
+ *  oppure se la JVM non espone i byte allocati per thread: gira nella fase
+ *  verify del build Maven (modulo engine).
+ *
+ *  Uso: java mnkgame.MNKAllocationCheck [MxNxK ...]
+ */
+public final class MNKAllocationCheck {
+    private static final String[] CONFIGURATIONS = { "7x7x4", "10x10x5", "50x50x10" };
+
+    private static final int CLEAN_RUNS = 3, MAX_WARMUP_RUNS = 30, RUNS = 5;
+
+    /**
+     *  Timeout di selectCell, in secondi.
+     */
+    private static final int TIMEOUT = 1;
+
+    /**
+     *  Memoria della tabella delle trasposizioni, in MB, come in SearchBenchmark.
+     */
+    private static final int TT_MB = 16;
+
+    /**
+     *  Letto una volta sola: ManagementFactory.getThreadMXBean() alloca, e
+     *  la lettura dei byte allocati non deve comparire nella misura.
+     */
+    private static final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+
+    private MNKAllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        String[] configurations = args.length > 0 ? args : CONFIGURATIONS;
+        if (allocatedBytes() < 0) {
+            System.err.println("Thread allocation counters are not available on this JVM.");
+            System.exit(1);
+        }
+
+        boolean ok = true;
+        for (String conf : configurations) {
+            String[] mnk = conf.split("x");
+            if (mnk.length != 3)
+                throw new IllegalArgumentException("Invalid configuration: " + conf + " (expected MxNxK)");
+            ok &= check(conf, Integer.parseInt(mnk[0]), Integer.parseInt(mnk[1]), Integer.parseInt(mnk[2]));
+        }
+        if (!ok)
+            System.exit(1);
+    }
+
+    /**
+     *  @return True se, dopo il riscaldamento, selectCell su (M,N,K) non alloca
+     */
+    private static boolean check(String conf, int M, int N, int K) {
+        MNKCell[] MC = BenchmarkPositions.position(M, N, K);
+        MNKBoard board = new MNKBoard(M, N, K);
+        for (MNKCell c : MC)
+            board.markCell(c.i, c.j);
+        MNKCell[] FC = board.getFreeCells();
+
+        AlphaBetaPro player = new AlphaBetaPro(TT_MB, 1);
+        player.initPlayer(M, N, K, MC.length % 2 == 0, TIMEOUT);
+
+        int warmup = 0;
+        for (int clean = 0; clean < CLEAN_RUNS && warmup < MAX_WARMUP_RUNS; warmup++)
+            clean = select(player, FC, MC)[0] == 0 ? clean + 1 : 0;
+
+        long nodes = 0, bytes = Long.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            long[] result = select(player, FC, MC);
+            bytes = Math.min(bytes, result[0]);
+            nodes += result[1];
+        }
+        nodes /= RUNS;
+
+        boolean ok = bytes == 0;
+        System.out.printf(Locale.ROOT, "%-12s selectCell dopo %d di riscaldamento, %,d nodi, min. su %d: %d byte allocati (%.4f B/nodo)%s%n",
+                conf, warmup, nodes, RUNS, bytes, (double) bytes / Math.max(1, nodes), ok ? "" : "  ALLOCA");
+        return ok;
+    }
+
+    /**
+     *  Esegue selectCell nella posizione MC e annulla la mossa scelta.
+     *  @return byte allocati da selectCell e nodi visitati
+     */
+    private static long[] select(AlphaBetaPro player, MNKCell[] FC, MNKCell[] MC) {
+        long before = allocatedBytes();
+        MNKCell c = player.selectCell(FC, MC);
+        long bytes = allocatedBytes() - before;
+        player.leave(new MNKCell[] { c });
+        return new long[] { bytes, player.statistics().nodes() };
+    }
+
+    /**
+     *  @return byte allocati finora dal thread corrente, oppure -1 se
+     *      la JVM non li espone
+     */
+    private static long allocatedBytes() {
+        if (BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) BEAN;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,342 @@
+package mnkgame;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *  Arena per partite tra due implementazioni di MNKPlayer, eseguite in
+ *  parallelo su tutti i core: ogni worker gioca una partita alla volta,
+ *  con istanze dei giocatori create apposta per quella partita.
+ *
+ *  Le partite sono giocate a coppie: la coppia p parte da un'apertura di
+ *  mosse casuali (opzione -o), generata dal seme s + p (opzione -s), e
+ *  nelle due partite i colori vengono scambiati. Le configurazioni (M,N,K) sono
+ *  usate a rotazione.
+ *
+ *  Al termine (o a ogni REPORT_INTERVAL partite) vengono riportati, dal
+ *  punto di vista del primo giocatore: vittorie/patte/sconfitte, Elo con
+ *  intervallo di confidenza al 95%, log-likelihood ratio dello SPRT, nodi
+ *  al secondo (per i giocatori AlphaBetaPro) e timeout. Una mossa che
+ *  supera il timeout fa perdere la partita, come nel framework; la mossa
+ *  non viene interrotta, quindi un giocatore che non termina blocca il
+ *  proprio worker.
+ *
+ *  Lo SPRT verifica H0: elo = elo0 contro H1: elo = elo1 (opzione -sprt,
+ *  di default 0 e 10), con errori ALPHA e BETA, usando l'approssimazione normale del punteggio; appena
+ *  il log-likelihood ratio esce dai limiti l'arena si ferma.
+ *
+ *  Ogni istanza di AlphaBetaPro alloca la propria tabella delle
+ *  trasposizioni: con molti worker conviene dimensionare -Xmx di conseguenza.
+ *
+ *  L'opzione -threads a,b fa giocare le istanze di AlphaBetaPro del primo
+ *  e del secondo giocatore con a e b thread di ricerca (Lazy SMP); senza,
+ *  vale la proprietà di sistema mnkgame.threads. Con AlphaBetaPro contro
+ *  se stesso e -threads 1,N si confrontano, a parità di timeout, i nodi al
+ *  secondo e la profondità media raggiunti con 1 e con N thread; ogni
+ *  partita usa allora fino a N core, e -w va ridotto di conseguenza.
+ *
+ *  Uso: java mnkgame.MNKArena [opzioni] GiocatoreA GiocatoreB
+ *  dove i giocatori sono nomi di classi (anche senza il package mnkgame).
+ *  Opzioni: -c MxNxK[,MxNxK...]  -g partite  -t secondi  -w worker
+ *           -s seme  -o mosse di apertura  -sprt elo0 elo1  -nosprt
+ *           -threads a,b
+ */
+public final class MNKArena {
+    private static final String[] CONFIGURATIONS = { "7x7x4", "10x10x5" };
+
+    private static final double ALPHA = 0.05, BETA = 0.05;
+    private static final int REPORT_INTERVAL = 20;
+
+    private final Class<? extends MNKPlayer>[] players;
+    private final int[][] configurations;
+    private final int timeout, opening_plies;
+    private final long seed;
+
+    /**
+     *  Thread di ricerca delle istanze di AlphaBetaPro di ogni giocatore,
+     *  oppure null per usare il costruttore senza argomenti.
+     */
+    private final int[] threads;
+
+    /**
+     *  Risultati, dal punto di vista del primo giocatore: totali e per
+     *  configurazione ([0] vittorie, [1] patte, [2] sconfitte).
+     */
+    private final int[] total = new int[3];
+    private final int[][] by_configuration;
+    private final int[] timeouts = new int[2];
+    private final long[] nodes = new long[2], nanos = new long[2];
+    private final long[] depths = new long[2], searches = new long[2];
+
+    /**
+     *  Risultato di una partita, dal punto di vista del primo giocatore.
+     */
+    private static final int WIN = 0, DRAW = 1, LOSS = 2;
+
+    private MNKArena(Class<? extends MNKPlayer>[] players, int[][] configurations, int timeout, int opening_plies, long seed,
+            int[] threads) {
+        this.players        = players;
+        this.configurations = configurations;
+        this.timeout        = timeout;
+        this.opening_plies  = opening_plies;
+        this.seed           = seed;
+        this.threads        = threads;
+        by_configuration    = new int[configurations.length][3];
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String[] confs = CONFIGURATIONS;
+        int games = 200, timeout = 1, plies = 2;
+        int workers = Runtime.getRuntime().availableProcessors();
+        long seed = 2022;
+        double elo0 = 0, elo1 = 10;
+        boolean sprt = true;
+        int[] threads = null;
+        List<String> names = new ArrayList<>();
+
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-c": confs = args[++a].split(","); break;
+                case "-g": games = Integer.parseInt(args[++a]); break;
+                case "-t": timeout = Integer.parseInt(args[++a]); break;
+                case "-w": workers = Integer.parseInt(args[++a]); break;
+                case "-s": seed = Long.parseLong(args[++a]); break;
+                case "-o": plies = Integer.parseInt(args[++a]); break;
+                case "-sprt":
+                    elo0 = Double.parseDouble(args[++a]);
+                    elo1 = Double.parseDouble(args[++a]);
+                    break;
+                case "-nosprt": sprt = false; break;
+                case "-threads":
+                    String[] t = args[++a].split(",");
+                    if (t.length != 2)
+                        throw new IllegalArgumentException("Invalid thread counts: " + args[a] + " (expected a,b)");
+                    threads = new int[] { Integer.parseInt(t[0]), Integer.parseInt(t[1]) };
+                    break;
+                default: names.add(args[a]);
+            }
+        }
+        if (names.size() != 2) {
+            System.err.println("Usage: java mnkgame.MNKArena [-c MxNxK,...] [-g games] [-t seconds] [-w workers] "
+                    + "[-s seed] [-o opening plies] [-sprt elo0 elo1 | -nosprt] [-threads a,b] PlayerA PlayerB");
+            System.exit(1);
+        }
+        if (workers < 1 || games < 1)
+            throw new IllegalArgumentException("At least one worker and one game are required.");
+        if (threads != null && (threads[0] < 1 || threads[1] < 1))
+            throw new IllegalArgumentException("At least one search thread per player is required.");
+
+        int[][] configurations = new int[confs.length][];
+        for (int k = 0; k < confs.length; k++) {
+            String[] mnk = confs[k].split("x");
+            if (mnk.length != 3)
+                throw new IllegalArgumentException("Invalid configuration: " + confs[k] + " (expected MxNxK)");
+            configurations[k] = new int[] { Integer.parseInt(mnk[0]), Integer.parseInt(mnk[1]), Integer.parseInt(mnk[2]) };
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Class<? extends MNKPlayer>[] players = new Class[] { playerClass(names.get(0)), playerClass(names.get(1)) };
+        MNKArena arena = new MNKArena(players, configurations, timeout, plies, seed, threads);
+        arena.run(games, workers, sprt, elo0, elo1);
+    }
+
+    private static Class<? extends MNKPlayer> playerClass(String name) {
+        try {
+            return Class.forName(name.contains(".") ? name : "mnkgame." + name).asSubclass(MNKPlayer.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Not an MNKPlayer: " + name, e);
+        }
+    }
+
+    /**
+     *  Gioca fino a games partite (arrotondate a un numero pari) su workers
+     *  thread, fermandosi prima se lo SPRT raggiunge una decisione.
+     */
+    private void run(int games, int workers, boolean sprt, double elo0, double elo1) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "MNKArena-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<int[]> done = new ExecutorCompletionService<>(pool);
+        int pairs = (games + 1) / 2;
+        for (int p = 0; p < pairs; p++) {
+            int pair = p;
+            for (int swap = 0; swap < 2; swap++) {
+                boolean a_first = swap == 0;
+                done.submit(() -> play(pair, a_first));
+            }
+        }
+
+        System.out.println(players[0].getSimpleName() + " vs " + players[1].getSimpleName() + ": " + 2 * pairs
+                + " partite, " + workers + " worker, timeout " + timeout + " s"
+                + (sprt ? String.format(Locale.ROOT, ", SPRT [%.1f, %.1f]", elo0, elo1) : ""));
+        long start = System.nanoTime();
+        String decision = null;
+        for (int g = 1; g <= 2 * pairs && decision == null; g++) {
+            int[] result;
+            try {
+                result = done.take().get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Arena game failed.", e.getCause());
+            }
+            total[result[0]]++;
+            by_configuration[result[1]][result[0]]++;
+
+            if (sprt) {
+                double llr = llr(elo0, elo1);
+                if (llr >= Math.log((1 - BETA) / ALPHA))
+                    decision = "H1 accettata (elo >= " + elo1 + ")";
+                else if (llr <= Math.log(BETA / (1 - ALPHA)))
+                    decision = "H0 accettata (elo <= " + elo0 + ")";
+            }
+            if (g % REPORT_INTERVAL == 0 && decision == null)
+                System.out.println(summary(sprt, elo0, elo1));
+        }
+        pool.shutdownNow();
+
+        System.out.println();
+        for (int k = 0; k < configurations.length; k++) {
+            int[] r = by_configuration[k];
+            System.out.printf("  %dx%dx%d: %d/%d/%d%n", configurations[k][0], configurations[k][1], configurations[k][2], r[WIN], r[DRAW], r[LOSS]);
+        }
+        System.out.println(summary(sprt, elo0, elo1));
+        for (int s = 0; s < 2; s++) {
+            synchronized (this) {
+                System.out.printf(Locale.ROOT, "  %-20s %stimeout %d%s%n", players[s].getSimpleName(),
+                        threads == null ? "" : threads[s] + " thread, ", timeouts[s],
+                        nanos[s] == 0 ? "" : String.format(Locale.ROOT, ", %.0f nodi/s, profondita' media %.2f",
+                                nodes[s] * 1e9 / nanos[s], (double) depths[s] / searches[s]));
+            }
+        }
+        if (decision != null)
+            System.out.println("SPRT: " + decision);
+        System.out.printf(Locale.ROOT, "Tempo: %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     *  Gioca la partita con l'apertura della coppia pair.
+     *  @return risultato per il primo giocatore e indice della configurazione
+     */
+    private int[] play(int pair, boolean a_first) throws ReflectiveOperationException {
+        int conf = pair % configurations.length;
+        int M = configurations[conf][0], N = configurations[conf][1], K = configurations[conf][2];
+
+        MNKPlayer a = newPlayer(0);
+        MNKPlayer b = newPlayer(1);
+        MNKPlayer[] P = a_first ? new MNKPlayer[] { a, b } : new MNKPlayer[] { b, a };
+        P[0].initPlayer(M, N, K, true, timeout);
+        P[1].initPlayer(M, N, K, false, timeout);
+
+        MNKBoard B = new MNKBoard(M, N, K);
+        opening(B, new Random(seed + pair));
+
+        long limit = timeout * 1_000_000_000L;
+        while (B.gameState() == MNKGameState.OPEN) {
+            int turn = B.currentPlayer();
+            int side = (turn == 0) == a_first ? 0 : 1;
+            long start = System.nanoTime();
+            MNKCell c = P[turn].selectCell(B.getFreeCells(), B.getMarkedCells());
+            long elapsed = System.nanoTime() - start;
+
+            if (P[turn] instanceof AlphaBetaPro)
+                account(side, ((AlphaBetaPro) P[turn]).statistics());
+            if (elapsed > limit || c == null || B.cellState(c.i, c.j) != MNKCellState.FREE) {
+                if (elapsed > limit)
+                    timeout(side);
+                return new int[] { side == 0 ? LOSS : WIN, conf };
+            }
+            B.markCell(c.i, c.j);
+        }
+
+        MNKGameState winner = a_first ? MNKGameState.WINP1 : MNKGameState.WINP2;
+        if (B.gameState() == MNKGameState.DRAW)
+            return new int[] { DRAW, conf };
+        return new int[] { B.gameState() == winner ? WIN : LOSS, conf };
+    }
+
+    /**
+     *  @return nuova istanza del giocatore side, con i thread di ricerca
+     *      indicati da -threads se è AlphaBetaPro
+     */
+    private MNKPlayer newPlayer(int side) throws ReflectiveOperationException {
+        if (threads != null && players[side] == AlphaBetaPro.class)
+            return new AlphaBetaPro(TranspositionTable.DEFAULT_MB, threads[side]);
+        return players[side].getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     *  Gioca sulla scacchiera opening_plies mosse casuali, ma riproducibili,
+     *  nel quadrato di lato 2K al centro, senza che la partita termini.
+     */
+    private void opening(MNKBoard B, Random rand) {
+        int plies = Math.min(opening_plies, B.M * B.N / 4);
+        int side = Math.min(2 * B.K, Math.min(B.M, B.N));
+        int i0 = (B.M - side) / 2, j0 = (B.N - side) / 2;
+
+        for (int n = 0; n < plies; ) {
+            int i = i0 + rand.nextInt(side), j = j0 + rand.nextInt(side);
+            if (B.cellState(i, j) != MNKCellState.FREE)
+                continue;
+            if (B.markCell(i, j) != MNKGameState.OPEN) {
+                B.unmarkCell();
+                continue;
+            }
+            n++;
+        }
+    }
+
+    private synchronized void account(int side, SearchStatistics stats) {
+        nodes[side] += stats.nodes();
+        nanos[side] += stats.elapsed_ns;
+        depths[side] += stats.depth();
+        searches[side]++;
+    }
+
+    private synchronized void timeout(int side) {
+        timeouts[side]++;
+    }
+
+    /**
+     *  @return punteggio medio del primo giocatore e relativa varianza per partita
+     */
+    private double[] score() {
+        int n = total[WIN] + total[DRAW] + total[LOSS];
+        double s = (total[WIN] + 0.5 * total[DRAW]) / n;
+        double var = (total[WIN] * (1 - s) * (1 - s) + total[DRAW] * (0.5 - s) * (0.5 - s) + total[LOSS] * s * s) / n;
+        return new double[] { s, var, n };
+    }
+
+    private static double elo(double s) {
+        s = Math.max(1e-6, Math.min(1 - 1e-6, s));
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    private static double expected(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     *  Log-likelihood ratio di H1 rispetto a H0, nell'approssimazione
+     *  normale del punteggio medio.
+     */
+    private double llr(double elo0, double elo1) {
+        double[] score = score();
+        if (score[1] == 0)
+            return 0;
+        double s0 = expected(elo0), s1 = expected(elo1);
+        return score[2] * (s1 - s0) * (2 * score[0] - s0 - s1) / (2 * score[1]);
+    }
+
+    private String summary(boolean sprt, double elo0, double elo1) {
+        double[] score = score();
+        double margin = 1.96 * Math.sqrt(score[1] / score[2]);
+        String line = String.format(Locale.ROOT, "%d partite  W/D/L %d/%d/%d  punteggio %.3f  Elo %+.1f [%+.1f, %+.1f]",
+                (int) score[2], total[WIN], total[DRAW], total[LOSS], score[0], elo(score[0]),
+                elo(score[0] - margin), elo(score[0] + margin));
+        if (sprt)
+            line += String.format(Locale.ROOT, "  LLR %.2f [%.2f, %.2f]", llr(elo0, elo1),
+                    Math.log(BETA / (1 - ALPHA)), Math.log((1 - BETA) / ALPHA));
+        return line;
+    }
+}
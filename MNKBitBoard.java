@@ -0,0 +1,275 @@
+package mnkgame;
+
+/**
+ *  Scacchiera interna usata dalla ricerca al posto della MNKBoard.
+ *  Per ogni giocatore mantiene una bitboard (long[]) in cui la cella
+ *  [i,j] corrisponde al bit i*(N+1) + j: la colonna aggiuntiva resta
+ *  sempre a 0 e fa da sentinella, in modo che gli shift orizzontali e
+ *  diagonali non "escano" da una riga per entrare nella successiva.
+ *  Espone la stessa interfaccia della MNKBoard (markCell, unmarkCell,
+ *  cellState, gameState, ...) e viene sincronizzata con la partita
+ *  soltanto in selectCell.
+ */
+public class MNKBitBoard {
+    public final int M, N, K;
+
+    /**
+     *  Distanza, in bit, tra due righe consecutive (N + colonna sentinella).
+     */
+    private final int S;
+
+    /**
+     *  Passi (in bit) delle quattro direzioni: orizzontale, verticale,
+     *  diagonale e anti-diagonale.
+     */
+    private final int[] DIR;
+
+    /**
+     *  Bitboard dei due giocatori: bits[0] per P1, bits[1] per P2.
+     */
+    private final long[][] bits;
+
+    /**
+     *  Stack delle celle marcate (come cellIndex), nell'ordine di gioco.
+     */
+    private final int[] MC;
+    private int marked;
+
+    private int currentPlayer;
+    private MNKGameState gameState;
+
+    /**
+     *  Celle canoniche (stato FREE), una per cellIndex: evitano di allocare
+     *  un nuovo MNKCell ogni volta che serve restituire una cella.
+     */
+    private final MNKCell[] cells;
+
+    private static final MNKCellState[] PLAYER = { MNKCellState.P1, MNKCellState.P2 };
+
+    /**
+     *  Complessità: O(M*N)
+     *  @param M numero di righe
+     *  @param N numero di colonne
+     *  @param K numero di simboli consecutivi per vincere
+     */
+    public MNKBitBoard(int M, int N, int K) {
+        if (M <= 0 || N <= 0 || K <= 0)
+            throw new IllegalArgumentException("Invalid board size: " + M + "x" + N + "x" + K);
+
+        this.M        = M;
+        this.N        = N;
+        this.K        = K;
+        S             = N + 1;
+        DIR           = new int[] { 1, S, S + 1, S - 1 };
+        bits          = new long[2][(M * S + 63) >>> 6];
+        MC            = new int[M * N];
+        marked        = 0;
+        currentPlayer = 0;
+        gameState     = MNKGameState.OPEN;
+        cells         = new MNKCell[M * N];
+
+        for (int i = 0; i < M; i++)
+            for (int j = 0; j < N; j++)
+                cells[i * N + j] = new MNKCell(i, j);
+    }
+
+    private static boolean isSet(long[] P, int b) {
+        return ((P[b >>> 6] >>> b) & 1L) != 0;
+    }
+
+    private void checkBounds(int i, int j) {
+        if (i < 0 || i >= M || j < 0 || j >= N)
+            throw new IndexOutOfBoundsException("Indexes " + i + "," + j + " out of matrix bounds");
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return stato della cella [i,j]
+     */
+    public MNKCellState cellState(int i, int j) {
+        checkBounds(i, j);
+        int b = i * S + j;
+        if (isSet(bits[0], b)) return MNKCellState.P1;
+        if (isSet(bits[1], b)) return MNKCellState.P2;
+        return MNKCellState.FREE;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return stato attuale della partita
+     */
+    public MNKGameState gameState() {
+        return gameState;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return 0 se deve muovere P1, 1 se deve muovere P2
+     */
+    public int currentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     *  Marca la cella [i,j] per il giocatore di turno.
+     *  Complessità: O(K)
+     *  @return stato della partita dopo la mossa
+     */
+    public MNKGameState markCell(int i, int j) {
+        if (gameState != MNKGameState.OPEN)
+            throw new IllegalStateException("Game ended!");
+        checkBounds(i, j);
+
+        int b = i * S + j;
+        if (isSet(bits[0], b) || isSet(bits[1], b))
+            throw new IllegalStateException("Cell " + i + "," + j + " is not free");
+
+        long[] P = bits[currentPlayer];
+        P[b >>> 6] |= 1L << b;
+        MC[marked++] = i * N + j;
+
+        if (isWinningCell(P, b))
+            gameState = currentPlayer == 0 ? MNKGameState.WINP1 : MNKGameState.WINP2;
+        else if (marked == M * N)
+            gameState = MNKGameState.DRAW;
+
+        currentPlayer = 1 - currentPlayer;
+        return gameState;
+    }
+
+    /**
+     *  Annulla l'ultima mossa giocata.
+     *  Complessità: O(1)
+     */
+    public void unmarkCell() {
+        if (marked == 0)
+            throw new IllegalStateException("No move to undo");
+
+        int c = MC[--marked];
+        int b = (c / N) * S + c % N;
+        currentPlayer = 1 - currentPlayer;
+        bits[currentPlayer][b >>> 6] &= ~(1L << b);
+        gameState = MNKGameState.OPEN;
+    }
+
+    /**
+     *  Valuta se la pedina appena posta nel bit b completa una fila di K.
+     *  Se la scacchiera sta in una sola parola si usa lo shift-and-AND
+     *  sull'intera bitboard; altrimenti si contano i bit consecutivi lungo
+     *  le quattro direzioni a partire da b (la sentinella interrompe le file).
+     *  Complessità: O(K)
+     */
+    private boolean isWinningCell(long[] P, int b) {
+        if (P.length == 1)
+            return kInARow(P[0]);
+
+        int size = M * S;
+        for (int d : DIR) {
+            int n = 1;
+            for (int x = b - d; x >= 0 && isSet(P, x) && n < K; x -= d) n++;
+            for (int x = b + d; x < size && isSet(P, x) && n < K; x += d) n++;
+            if (n >= K) return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Shift-and-AND su una bitboard di una sola parola: dopo ogni passo
+     *  un bit resta acceso solo se apre una fila lunga almeno quanto
+     *  il passo cumulato. Raddoppiando la lunghezza a ogni passo bastano
+     *  O(log K) shift per direzione.
+     *  Complessità: O(log K)
+     */
+    private boolean kInARow(long x) {
+        for (int d : DIR) {
+            long t = x;
+            int len = 1;
+            while (len < K && t != 0) {
+                int step = Math.min(len, K - len);
+                t = step * d < 64 ? t & (t >>> (step * d)) : 0;
+                len += step;
+            }
+            if (t != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di celle marcate
+     */
+    public int marked() {
+        return marked;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param k posizione nell'ordine di gioco, in [0, marked())
+     *  @return cellIndex della k-esima cella marcata
+     */
+    public int markedCell(int k) {
+        return MC[k];
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di celle libere
+     */
+    public int freeCount() {
+        return M * N - marked;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return cella canonica (stato FREE) di indice index
+     */
+    public MNKCell cell(int index) {
+        return cells[index];
+    }
+
+    /**
+     *  Complessità: O(M*N)
+     *  @return celle libere, in ordine di riga
+     */
+    public MNKCell[] getFreeCells() {
+        MNKCell[] FC = new MNKCell[M * N - marked];
+        int n = 0;
+        for (int i = 0; i < M; i++)
+            for (int j = 0; j < N; j++) {
+                int b = i * S + j;
+                if (!isSet(bits[0], b) && !isSet(bits[1], b))
+                    FC[n++] = cells[i * N + j];
+            }
+        return FC;
+    }
+
+    /**
+     *  Versione di getFreeCells() che non alloca: copia i cellIndex
+     *  delle celle libere in buf a partire dalla posizione from.
+     *  Complessità: O(M*N)
+     *  @param buf  array di destinazione, con almeno freeCount() posizioni libere da from
+     *  @param from prima posizione di buf da scrivere
+     *  @return numero di celle copiate
+     */
+    public int getFreeCells(int[] buf, int from) {
+        int n = from;
+        for (int i = 0; i < M; i++)
+            for (int j = 0; j < N; j++) {
+                int b = i * S + j;
+                if (!isSet(bits[0], b) && !isSet(bits[1], b))
+                    buf[n++] = i * N + j;
+            }
+        return n - from;
+    }
+
+    /**
+     *  Complessità: O(n), dove n è il numero di celle marcate
+     *  @return celle marcate, in ordine di gioco
+     */
+    public MNKCell[] getMarkedCells() {
+        MNKCell[] result = new MNKCell[marked];
+        for (int k = 0; k < marked; k++)
+            result[k] = new MNKCell(MC[k] / N, MC[k] % N, PLAYER[k % 2]);
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+package mnkgame;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ *  Generatore offline del libro delle aperture (OpeningBook) per una
+ *  configurazione (M,N,K). A partire dalla scacchiera vuota, visita in
+ *  profondità le prime plies mosse: in ogni configurazione AlphaBetaPro
+ *  cerca la mossa migliore per il giocatore di turno, con il tempo
+ *  indicato, e la salva nel libro. Da ogni configurazione si prosegue con
+ *  la mossa trovata e con le prime branching mosse della MovesQueue, che
+ *  rappresentano le risposte più probabili dell'avversario. Le
+ *  configurazioni già visitate, per trasposizione o per simmetria, non
+ *  vengono ripetute.
+ *
+ *  Uso: java mnkgame.MNKBookGenerator M N K plies secondi [branching] [cartella]
+ */
+public final class MNKBookGenerator {
+    private final int M, N, plies, branching;
+    private final ZobristHash zobrist;
+    private final AlphaBetaPro[] players;
+    private final Map<Long, Integer> book = new HashMap<>();
+
+    /**
+     *  Scacchiera, coda e StrategySet del generatore, usati per scegliere
+     *  le mosse da esplorare.
+     */
+    private final MNKBitBoard B;
+    private final MovesQueue Q;
+    private final StrategySet P1, P2;
+    private final Deque<MNKCell> MC = new ArrayDeque<>();
+
+    private MNKBookGenerator(int M, int N, int K, int plies, int seconds, int branching) {
+        this.M         = M;
+        this.N         = N;
+        this.plies     = plies;
+        this.branching = branching;
+        zobrist        = new ZobristHash(M, N, K);
+        players        = new AlphaBetaPro[] { new AlphaBetaPro(), new AlphaBetaPro() };
+        players[0].initPlayer(M, N, K, true, seconds);
+        players[1].initPlayer(M, N, K, false, seconds);
+        B  = new MNKBitBoard(M, N, K);
+        Q  = new MovesQueue(B, MNKCellState.P1);
+        P1 = new StrategySet(B, MNKCellState.P1);
+        P2 = new StrategySet(B, MNKCellState.P2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: java mnkgame.MNKBookGenerator M N K plies seconds [branching] [directory]");
+            System.exit(1);
+        }
+        int M = Integer.parseInt(args[0]), N = Integer.parseInt(args[1]), K = Integer.parseInt(args[2]);
+        int plies     = Integer.parseInt(args[3]);
+        int seconds   = Integer.parseInt(args[4]);
+        int branching = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+        Path dir      = Paths.get(args.length > 6 ? args[6] : ".");
+
+        MNKBookGenerator generator = new MNKBookGenerator(M, N, K, plies, seconds, branching);
+        generator.visit(0);
+        OpeningBook.write(dir, M, N, K, generator.book);
+        System.out.println(generator.book.size() + " positions written to " + dir.resolve(OpeningBook.fileName(M, N, K)));
+    }
+
+    private void visit(int ply) {
+        long key = zobrist.canonical();
+        if (ply >= plies || B.gameState() != MNKGameState.OPEN || book.containsKey(key))
+            return;
+
+        MNKCell[] moves = new MNKCell[MC.size()];
+        Iterator<MNKCell> it = MC.descendingIterator();
+        for (int k = 0; k < moves.length; k++)
+            moves[k] = it.next();
+
+        int best = players[ply % 2].analyse(moves);
+        book.put(key, zobrist.toCanonical(zobrist.canonicalSymmetry(), best));
+        System.out.println("ply " + ply + " " + Arrays.toString(moves) + " -> [" + best / N + "," + best % N + "]");
+
+        // Mossa trovata, più le prime branching mosse della coda
+        int[] children = new int[branching + 1];
+        int n = 0;
+        children[n++] = best;
+        int[] queue = new int[M * N];
+        int q = Q.moves(queue, 0);
+        for (int k = 0; k < q && n < children.length; k++)
+            if (queue[k] != best)
+                children[n++] = queue[k];
+
+        for (int k = 0; k < n; k++) {
+            MNKCell c = B.cell(children[k]);
+            mark(c);
+            visit(ply + 1);
+            unmark(c);
+        }
+    }
+
+    private void mark(MNKCell c) {
+        B.markCell(c.i, c.j);
+        zobrist.toggle(c.i * N + c.j, MC.size() % 2);
+        Q.remove(c, B);
+        P1.update(c, B, Q);
+        P2.update(c, B, Q);
+        MC.push(c);
+    }
+
+    private void unmark(MNKCell c) {
+        MC.pop();
+        zobrist.toggle(c.i * N + c.j, MC.size() % 2);
+        Q.undo(B, c);
+        P1.undo(c, B, Q);
+        P2.undo(c, B, Q);
+        B.unmarkCell();
+    }
+}
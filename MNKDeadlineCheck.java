@@ -0,0 +1,98 @@
+package mnkgame;
+
+import java.util.*;
+
+/**
+ *  Verifica che AlphaBetaPro restituisca ogni mossa entro la scadenza hard
+ *  (TimeManager.HARD_FRACTION del timeout) sulle scacchiere grandi, dove
+ *  un nodo costa di più e il costo di una mossa potrebbe dipendere
+ *  dall'area della scacchiera.
+ *
+ *  Per ogni configurazione AlphaBetaPro gioca per primo contro un
+ *  avversario che risponde subito, con una cella casuale (ma riproducibile)
+ *  vicina all'ultima mossa, così la partita resta aperta. Il tempo di
+ *  selectCell è misurato come in MNKArena, compresa la preparazione
+ *  delle celle libere e marcate.
+ *
+ *  Il processo termina con codice 1 se almeno una mossa supera la
+ *  scadenza hard, così la verifica può girare in uno script o in CI.
+ *
+ *  Uso: java mnkgame.MNKDeadlineCheck [-c MxNxK[,MxNxK...]] [-t secondi] [-m mosse] [-s seme]
+ */
+public final class MNKDeadlineCheck {
+    private static final String[] CONFIGURATIONS = { "50x50x10", "100x100x6", "200x200x6" };
+
+    public static void main(String[] args) {
+        String[] confs = CONFIGURATIONS;
+        int timeout = 5, moves = 10;
+        long seed = 2022;
+
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-c": confs = args[++a].split(","); break;
+                case "-t": timeout = Integer.parseInt(args[++a]); break;
+                case "-m": moves = Integer.parseInt(args[++a]); break;
+                case "-s": seed = Long.parseLong(args[++a]); break;
+                default:
+                    System.err.println("Usage: java mnkgame.MNKDeadlineCheck [-c MxNxK,...] [-t seconds] [-m moves] [-s seed]");
+                    System.exit(1);
+            }
+        }
+        if (timeout < 1 || moves < 1)
+            throw new IllegalArgumentException("At least one second and one move are required.");
+
+        long deadline = (long) (timeout * 1e9 * TimeManager.HARD_FRACTION);
+        boolean ok = true;
+        for (String conf : confs) {
+            String[] mnk = conf.split("x");
+            if (mnk.length != 3)
+                throw new IllegalArgumentException("Invalid configuration: " + conf + " (expected MxNxK)");
+            long worst = play(Integer.parseInt(mnk[0]), Integer.parseInt(mnk[1]), Integer.parseInt(mnk[2]),
+                    timeout, moves, new Random(seed));
+            boolean late = worst > deadline;
+            ok &= !late;
+            System.out.printf(Locale.ROOT, "%-12s selectCell max %7.1f ms, scadenza hard %7.1f ms%s%n",
+                    conf, worst / 1e6, deadline / 1e6, late ? "  OLTRE LA SCADENZA" : "");
+        }
+        if (!ok)
+            System.exit(1);
+    }
+
+    /**
+     *  Gioca fino a moves mosse di AlphaBetaPro.
+     *  @return durata, in nanosecondi, della selectCell più lenta
+     */
+    private static long play(int M, int N, int K, int timeout, int moves, Random rand) {
+        AlphaBetaPro player = new AlphaBetaPro();
+        player.initPlayer(M, N, K, true, timeout);
+        MNKBoard B = new MNKBoard(M, N, K);
+
+        long worst = 0;
+        for (int m = 0; m < moves && B.gameState() == MNKGameState.OPEN; m++) {
+            long start = System.nanoTime();
+            MNKCell c = player.selectCell(B.getFreeCells(), B.getMarkedCells());
+            worst = Math.max(worst, System.nanoTime() - start);
+            if (B.markCell(c.i, c.j) != MNKGameState.OPEN)
+                break;
+            reply(B, c, rand);
+        }
+        return worst;
+    }
+
+    /**
+     *  Marca una cella libera casuale a distanza al più 2 da c, oppure,
+     *  se non ce ne sono, una cella libera qualsiasi.
+     */
+    private static void reply(MNKBoard B, MNKCell c, Random rand) {
+        for (int attempt = 0; attempt < 32; attempt++) {
+            int i = c.i + rand.nextInt(5) - 2, j = c.j + rand.nextInt(5) - 2;
+            if (i >= 0 && i < B.M && j >= 0 && j < B.N && B.cellState(i, j) == MNKCellState.FREE) {
+                B.markCell(i, j);
+                return;
+            }
+        }
+        MNKCell[] FC = B.getFreeCells();
+        MNKCell f = FC[rand.nextInt(FC.length)];
+        B.markCell(f.i, f.j);
+    }
+}
@@ -0,0 +1,324 @@
+package mnkgame;
+
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ *  Giocatore Monte Carlo Tree Search con selezione UCT, pensato per le
+ *  scacchiere molto grandi, dove il fattore di ramificazione rende
+ *  l'alpha-beta troppo superficiale.
+ *
+ *  - Espansione: i figli di un nodo sono le prime MAX_CHILDREN mosse della
+ *    MovesQueue, in ordine di priorità; se un giocatore ha una mossa
+ *    vincente (StrategySet.winning()) il nodo ha un solo figlio, la
+ *    vittoria o il blocco.
+ *
+ *  - Playout: stessa politica, ma con una mossa scelta a caso tra le prime
+ *    PLAYOUT_TOP della coda, per al più PLAYOUT_DEPTH mosse; se la partita
+ *    non è finita il risultato è stimato con la valutazione a pattern
+ *    degli StrategySet.
+ *
+ *  - Parallelismo: threads thread condividono lo stesso albero (tree
+ *    parallelism). Ogni thread ha la propria scacchiera, MovesQueue e
+ *    StrategySet, e segna i nodi che sta attraversando con una virtual
+ *    loss, così gli altri thread preferiscono percorsi diversi.
+ *
+ *  - Memoria: l'albero vive in due NodePool di dimensione fissa. A ogni
+ *    mossa la radice scende lungo le mosse giocate, riusando il
+ *    sottoalbero; quando il pool è pieno oltre COMPACT_FRACTION il solo
+ *    sottoalbero della radice viene copiato nel pool di riserva, che
+ *    diventa quello attivo.
+ */
+public class MonteCarloPro implements MNKPlayer {
+    private static final int MAX_CHILDREN = 24, PLAYOUT_TOP = 4, PLAYOUT_DEPTH = 40;
+
+    /**
+     *  Costante di esplorazione di UCT e virtual loss, in visite.
+     */
+    private static final double UCT_C = 0.7;
+    private static final int VIRTUAL_LOSS = 1;
+
+    /**
+     *  Punteggio di una vittoria in NodePool.score() (la patta vale WIN / 2).
+     */
+    private static final long WIN = 1024;
+
+    private static final double COMPACT_FRACTION = 0.5;
+
+    public static final int DEFAULT_MB = 64;
+
+    private final int mb, threads;
+    private NodePool tree, spare;
+
+    /**
+     *  Radice dell'albero nel pool attivo e numero di celle marcate nella
+     *  sua configurazione.
+     */
+    private int root, root_marked;
+
+    private Worker[] workers;
+    private ExecutorService pool;
+    private TimeManager time;
+    private int M, N, K;
+
+    /**
+     *  Stato di un thread della ricerca: scacchiera locale, sincronizzata
+     *  con la radice tra una simulazione e l'altra.
+     */
+    private final class Worker {
+        final MNKBitBoard B;
+        final MovesQueue Q;
+        final StrategySet[] sets;
+        final Random rand;
+        final int[] path, movers, buf;
+
+        Worker(long seed) {
+            B      = new MNKBitBoard(M, N, K);
+            Q      = new MovesQueue(B, MNKCellState.P1);
+            sets   = new StrategySet[] { new StrategySet(B, MNKCellState.P1), new StrategySet(B, MNKCellState.P2) };
+            rand   = new Random(seed);
+            path   = new int[M * N + 1];
+            movers = new int[M * N + 1];
+            buf    = new int[M * N];
+        }
+
+        void mark(int x) {
+            MNKCell c = B.cell(x);
+            B.markCell(c.i, c.j);
+            Q.remove(c, B);
+            sets[0].update(c, B, Q);
+            sets[1].update(c, B, Q);
+        }
+
+        void unmark() {
+            MNKCell c = B.cell(B.markedCell(B.marked() - 1));
+            Q.undo(B, c);
+            sets[0].undo(c, B, Q);
+            sets[1].undo(c, B, Q);
+            B.unmarkCell();
+        }
+
+        /**
+         *  Copia in buf le mosse da considerare nella configurazione
+         *  attuale: la vittoria, il blocco o le prime max mosse della coda.
+         *  @return numero di mosse
+         */
+        int candidates(int max) {
+            int side = B.currentPlayer();
+            if (sets[side].winning() >= 1 || sets[1 - side].winning() >= 1) {
+                MNKCell c = sets[side].winning() >= 1 ? sets[side].winningCell(B) : sets[1 - side].winningCell(B);
+                buf[0] = c.i * N + c.j;
+                return 1;
+            }
+            if (B.marked() == 0) {
+                buf[0] = (M / 2) * N + N / 2;
+                return 1;
+            }
+            int n = Q.moves(buf, 0, max);
+            return n > 0 ? n : Math.min(max, B.getFreeCells(buf, 0));
+        }
+
+        /**
+         *  Una simulazione: selezione ed espansione nell'albero, playout,
+         *  aggiornamento dei nodi attraversati.
+         *  Complessità: O((h + PLAYOUT_DEPTH)*u), dove h è la profondità
+         *  raggiunta nell'albero e u il costo di mark/unmark
+         */
+        void simulate() {
+            NodePool T = tree;
+            int start = B.marked(), node = root, depth = 0;
+            T.update(node, 1, 0);
+
+            while (B.gameState() == MNKGameState.OPEN) {
+                if (!T.expanded(node)) {
+                    if (node != root && T.visits(node) <= VIRTUAL_LOSS || !T.tryExpand(node))
+                        break;
+                    if (!T.expand(node, buf, candidates(MAX_CHILDREN)))
+                        break;
+                }
+                node = select(T, node);
+                T.update(node, VIRTUAL_LOSS, 0);
+                movers[depth] = B.currentPlayer();
+                path[depth++] = node;
+                mark(T.move(node));
+            }
+
+            long result = B.gameState() == MNKGameState.OPEN ? playout() : result();
+            for (int k = 0; k < depth; k++)
+                T.update(path[k], 1 - VIRTUAL_LOSS, movers[k] == 0 ? result : WIN - result);
+            while (B.marked() > start)
+                unmark();
+        }
+
+        /**
+         *  @return figlio di node con il valore UCT massimo; i figli mai
+         *      visitati hanno la precedenza, nell'ordine della coda
+         */
+        private int select(NodePool T, int node) {
+            double log = Math.log(Math.max(1, T.visits(node)));
+            int best = -1;
+            double best_value = Double.NEGATIVE_INFINITY;
+            for (int c = T.first(node), end = c + T.count(node); c < end; c++) {
+                int n = T.visits(c);
+                if (n == 0)
+                    return c;
+                double value = T.score(c) / (double) (WIN * n) + UCT_C * Math.sqrt(log / n);
+                if (value > best_value) {
+                    best_value = value;
+                    best       = c;
+                }
+            }
+            return best;
+        }
+
+        /**
+         *  Completa la partita con la politica dei playout, poi la riporta
+         *  alla configurazione di partenza.
+         *  @return risultato per P1, in [0, WIN]
+         */
+        private long playout() {
+            int start = B.marked();
+            for (int ply = 0; ply < PLAYOUT_DEPTH && B.gameState() == MNKGameState.OPEN; ply++) {
+                int n = candidates(PLAYOUT_TOP);
+                mark(buf[rand.nextInt(n)]);
+            }
+            long result = result();
+            while (B.marked() > start)
+                unmark();
+            return result;
+        }
+
+        /**
+         *  @return risultato per P1, in [0, WIN]: esatto se la partita è
+         *      finita, altrimenti stimato dalla valutazione a pattern
+         */
+        private long result() {
+            switch (B.gameState()) {
+                case WINP1: return WIN;
+                case WINP2: return 0;
+                case DRAW: return WIN / 2;
+                default:
+                    long a = sets[0].score(), b = sets[1].score();
+                    return Math.round(WIN * (0.5 + 0.5 * (a - b) / (a + b + 1)));
+            }
+        }
+
+        void search() {
+            while (!time.hardExpired())
+                simulate();
+        }
+    }
+
+    public MonteCarloPro() {
+        this(DEFAULT_MB, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     *  @param mb      memoria da dedicare all'albero, in MB (divisa tra i due pool)
+     *  @param threads numero di thread della ricerca
+     */
+    public MonteCarloPro(int mb, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one search thread is required.");
+        if (mb <= 0)
+            throw new IllegalArgumentException("Invalid tree size: " + mb + " MB");
+        this.mb      = mb;
+        this.threads = threads;
+    }
+
+    @Override
+    public void initPlayer(int M, int N, int K, boolean first, int timeout_in_secs) {
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        time   = new TimeManager(timeout_in_secs);
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE / 2, (long) mb * 1024 * 1024 / (2 * NodePool.NODE_BYTES));
+        tree  = new NodePool(capacity);
+        spare = new NodePool(capacity);
+        root = root_marked = 0;
+
+        Random seeds = new Random(System.currentTimeMillis());
+        workers = new Worker[threads];
+        for (int w = 0; w < threads; w++)
+            workers[w] = new Worker(seeds.nextLong());
+
+        if (pool != null)
+            pool.shutdownNow();
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "MonteCarloPro-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public MNKCell selectCell(MNKCell[] FC, MNKCell[] MC) {
+        time.start();
+        for (Worker w : workers)
+            for (int k = w.B.marked(); k < MC.length; k++)
+                w.mark(MC[k].i * N + MC[k].j);
+        advance(MC);
+
+        // Mossa forzata: nessuna ricerca
+        Worker main = workers[0];
+        if (main.candidates(MAX_CHILDREN) == 1 || FC.length == 1)
+            return FC.length == 1 ? FC[0] : main.B.cell(main.buf[0]);
+
+        Future<?>[] futures = new Future<?>[threads - 1];
+        for (int w = 1; w < threads; w++)
+            futures[w - 1] = pool.submit(workers[w]::search);
+        main.search();
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("MCTS worker failed.", e);
+            }
+        }
+
+        // Figlio più visitato della radice
+        int best = -1;
+        for (int c = tree.first(root), end = c + tree.count(root); c < end; c++)
+            if (best == -1 || tree.visits(c) > tree.visits(best))
+                best = c;
+        if (best == -1)
+            return FC[workers[0].rand.nextInt(FC.length)];
+        return main.B.cell(tree.move(best));
+    }
+
+    /**
+     *  Porta la radice alla configurazione attuale seguendo le mosse
+     *  giocate dall'ultima ricerca, se sono nell'albero; altrimenti svuota
+     *  l'albero. Compatta il pool se è pieno oltre COMPACT_FRACTION.
+     *  Complessità: O(m*MAX_CHILDREN + s), dove m è il numero di mosse
+     *  giocate e s la dimensione del sottoalbero copiato
+     */
+    private void advance(MNKCell[] MC) {
+        for (int k = root_marked; k < MC.length && root != -1; k++) {
+            int x = MC[k].i * N + MC[k].j, child = -1;
+            if (tree.expanded(root))
+                for (int c = tree.first(root), end = c + tree.count(root); c < end && child == -1; c++)
+                    if (tree.move(c) == x)
+                        child = c;
+            root = child;
+        }
+        root_marked = MC.length;
+
+        if (root == -1) {
+            tree.reset();
+            root = 0;
+        } else if (tree.used() > COMPACT_FRACTION * tree.capacity()) {
+            tree.copySubtree(root, spare);
+            NodePool tmp = tree;
+            tree  = spare;
+            spare = tmp;
+            root  = 0;
+        }
+    }
+
+    @Override
+    public String playerName() {
+        return "MonteCarloPro";
+    }
+}
@@ -1,147 +1,223 @@
 package mnkgame;
 
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * Coda delle mosse candidate, ordinate per priorità (numero di MNKStrategy
+ * valide che passano per la cella). Poiché le priorità sono interi piccoli,
+ * al più 4*K, la coda è una bucket queue: per ogni priorità p, head[p] è la
+ * testa di una lista doppiamente concatenata (next/prev) delle celle in
+ * coda con priorità p. Inserimento, rimozione e cambio di priorità costano
+ * O(1) e le mosse si visitano in ordine senza bisogno di ordinarle.
+ *
+ * Le tabelle per cella sono indicizzate sulla BoardRegion region, che
+ * copre le celle entro K-1 dalle celle marcate (le sole che possono avere
+ * priorità): la memoria cresce con le mosse giocate e non con l'area della
+ * scacchiera. head, next e prev contengono posizioni di region, che
+ * cells[r] riporta a cellIndex.
+ */
 public class MovesQueue {
-    private final PriorityQueue<MNKCellPriority> Q;
+    private final int[] head;
+    private int[] next, prev, cells;
 
-    private final HashMap<Integer, MNKCell> hTable; // "Bodyguard": permette di verificare in O(1)
-    // se una data cella è presente nella Priority Queue
+    private boolean[] hTable; // "Bodyguard": permette di verificare in O(1)
+    // se una data cella è presente nella coda
 
-    private final HashMap<Integer, Integer> pTable; // Priority-table
+    private int[] pTable; // Priority-table
 
-    public final MNKCellState player;
-    private final int N;
+    private final BoardRegion region;
 
-    public static final class MNKCellPriority extends MNKCell implements Comparable<MNKCellPriority> {
-        private final int priority;
+    /**
+     * Priorità massima tra le celle in coda (0 se la coda è vuota)
+     * e numero di celle in coda.
+     */
+    private int top, size;
 
-        public MNKCellPriority(int i, int j, MNKCellState state, int priority) {
-            super(i, j, state);
-            this.priority = priority;
-        }
+    public final MNKCellState player;
+    private final MNKBitBoard B;
+    private final int N, K;
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o)
-                return true;
-            if (o == null || getClass() != o.getClass())
-                return false;
-            MNKCellPriority that = (MNKCellPriority) o;
-            return that.i == i && that.j == j;
-        }
+    public MovesQueue(MNKBitBoard B, MNKCellState p) {
+        region = new BoardRegion(B.M, B.N);
+        head   = new int[4 * B.K + 1];
+        next   = new int[region.area()];
+        prev   = new int[region.area()];
+        hTable = new boolean[region.area()];
+        pTable = new int[region.area()];
+        cells  = new int[region.area()];
+        top    = size = 0;
+        this.B = B;
+        N      = B.N;
+        K      = B.K;
+        player = p;
 
-        @Override
-        public int hashCode() {
-            return super.hashCode();
-        }
+        Arrays.fill(head, -1);
+        for (int r = 0; r < cells.length; r++)
+            cells[r] = region.cell(r);
+    }
 
-        @Override
-        public int compareTo(MNKCellPriority c) {
-            if (priority == c.priority) {
-                return 0;
-            } else if (priority < c.priority) {
-                return +1;
-            } return -1;
-        }
+    private int cellIndex(MNKCell c) {
+        return c.i * N + c.j;
+    }
 
-        @Override
-        public String toString() {
-            return "[" + i + "," + j + "] - priority=" + priority;
+    /**
+     * Allarga region, se serve, alle celle entro K-1 dalla cella x,
+     * rimappando le tabelle per cella.
+     * Complessità: O(1) ammortizzato
+     */
+    private void cover(int x) {
+        if (!region.cover(x, K - 1))
+            return;
+        next   = region.grow(next, 1, -1);
+        prev   = region.grow(prev, 1, -1);
+        pTable = region.grow(pTable, 1, 0);
+        hTable = region.grow(hTable, 1);
+        cells  = new int[region.area()];
+        for (int r = 0; r < cells.length; r++) {
+            cells[r] = region.cell(r);
+            if (hTable[r]) {
+                next[r] = next[r] == -1 ? -1 : region.moved(next[r]);
+                prev[r] = prev[r] == -1 ? -1 : region.moved(prev[r]);
+            }
         }
+        for (int p = 0; p < head.length; p++)
+            head[p] = head[p] == -1 ? -1 : region.moved(head[p]);
     }
 
-    public MovesQueue(MNKBoard B, MNKCellState p) {
-        Q = new PriorityQueue<>(B.M * B.N / 2);
-        hTable = new HashMap<>(B.M * B.N);
-        pTable = new HashMap<>(B.M * B.N);
-        N = B.N;
-        player = p;
+    /**
+     * Inserisce la cella in posizione r di region in testa alla lista
+     * di priorità p.
+     * Complessità: O(1)
+     */
+    private void link(int r, int p) {
+        next[r] = head[p];
+        prev[r] = -1;
+        if (head[p] != -1)
+            prev[head[p]] = r;
+        head[p] = r;
 
-        for (MNKCell c : B.getFreeCells())
-            pTable.put(cellIndex(c), 0);
+        hTable[r] = true;
+        size++;
+        if (p > top)
+            top = p;
     }
 
-    private int cellIndex(MNKCell c) {
-        return c.i * N + c.j;
+    /**
+     * Stacca la cella in posizione r di region dalla lista di priorità p.
+     * Complessità: O(1) ammortizzato
+     */
+    private void unlink(int r, int p) {
+        if (prev[r] != -1)
+            next[prev[r]] = next[r];
+        else
+            head[p] = next[r];
+        if (next[r] != -1)
+            prev[next[r]] = prev[r];
+
+        hTable[r] = false;
+        size--;
+        while (top > 0 && head[top] == -1)
+            top--;
     }
 
     /**
      * Data una cella c, aggiorna la sua priorità nella coda di mosse.
-     * Complessità: O(n), dove n è la dimensione della
-     *      coda, se c è contenuto; O(log n) altrimenti
+     * Complessità: O(1)
      * @param c        cella di cui si vuole aggiornare la priorità
      * @param priority nuova priorità
      */
-    public void shiftPriority(MNKCell c, MNKBoard B, int priority) {
-        if (priority < 0)
+    public void shiftPriority(MNKCell c, MNKBitBoard B, int priority) {
+        if (priority < 0 || priority >= head.length)
             throw new IllegalStateException("Invalid priority!");
 
-        MNKCellPriority cp = new MNKCellPriority(c.i, c.j, B.cellState(c.i, c.j), priority);
-        pTable.put(cellIndex(c), priority); // Aggiornamento priorità nella tabella
-
-        if (priority == 0)
-            remove(c, B);
-        else { // Rimozione e re-inserimento a priorità aggiornata
-            if (hTable.get(cellIndex(c)) != null)
-                Q.remove(cp);
-            else
-                hTable.put(cellIndex(c), c);
-            Q.add(cp);
-        }
+        int x = cellIndex(c);
+        cover(x);
+        int r = region.index(x);
+        if (hTable[r])
+            unlink(r, pTable[r]);
 
-        if (Q.size() != hTable.size())
-            throw new IllegalStateException("Mismatch between queue and hash table.");
+        pTable[r] = priority; // Aggiornamento priorità nella tabella
+        if (priority > 0)
+            link(r, priority);
     }
 
     /**
-     * Complessità: O(n log n), dove n è la dimensione della coda
-     * 
+     * Complessità: O(n), dove n è la dimensione della coda
+     *
      * @return mosse nella coda in ordine di priorità
      */
     public MNKCell[] moves() {
-        if (Q.size() == 0)
+        if (size == 0)
             return null;
-        MNKCell[] queue = Q.toArray(new MNKCell[0]);
-        Arrays.sort(queue);
+        MNKCell[] queue = new MNKCell[size];
+        int n = 0;
+        for (int p = top; p > 0; p--)
+            for (int r = head[p]; r != -1; r = next[r])
+                queue[n++] = B.cell(cells[r]);
         return queue;
     }
 
     /**
-     * Rimuove una mossa c marcata dalla coda.
-     * Complessità: O(n); dove n è la dimensione della
-     *      coda, se c è contenuto; O(1) altrimenti
+     * Versione di moves() che non alloca: copia i cellIndex delle mosse,
+     * in ordine di priorità, in buf a partire dalla posizione from.
+     * Complessità: O(n), dove n è la dimensione della coda
+     * @param buf  array di destinazione, con almeno size() posizioni libere da from
+     * @param from prima posizione di buf da scrivere
+     * @return numero di mosse copiate
+     */
+    public int moves(int[] buf, int from) {
+        return moves(buf, from, size);
+    }
+
+    /**
+     * Come moves(buf, from), ma copia solo le prime max mosse.
+     * Complessità: O(max + 4*K)
+     * @return numero di mosse copiate, al più max
+     */
+    public int moves(int[] buf, int from, int max) {
+        int n = from;
+        for (int p = top; p > 0 && n - from < max; p--)
+            for (int r = head[p]; r != -1 && n - from < max; r = next[r])
+                buf[n++] = cells[r];
+        return n - from;
+    }
+
+    /**
+     * Complessità: O(1)
+     * @return numero di mosse nella coda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rimuove una mossa c marcata dalla coda. Le celle vicine a c
+     * possono ora ricevere priorità: region viene allargata fin qui.
+     * Complessità: O(1) ammortizzato
      * @param c cella marcata
      */
-    public void remove(MNKCell c, MNKBoard B) {
-        if (hTable.get(cellIndex(c)) != null) {
-            hTable.remove(cellIndex(c));
-            boolean found = Q.remove(new MNKCellPriority(c.i, c.j, B.cellState(c.i, c.j), -1)); // Valore fittizio
-
-            if (!found)
-                throw new IllegalStateException("Can't find cell that should be in the queue");
-            if (Q.size() != hTable.size())
-                throw new IllegalStateException("Mismatch between queue and hash table.");
-        }
+    public void remove(MNKCell c, MNKBitBoard B) {
+        int x = cellIndex(c);
+        cover(x);
+        int r = region.index(x);
+        if (hTable[r])
+            unlink(r, pTable[r]);
     }
 
     /**
      * Ripristina la cella c smarcata nella coda di mosse.
-     * Complessità: O(log n), dove n è la dimensione della coda
+     * Complessità: O(1)
      * @param c cella appena smarcata
      */
-    public void undo(MNKBoard B, MNKCell c) {
-        if (hTable.get(cellIndex(c)) != null)
+    public void undo(MNKBitBoard B, MNKCell c) {
+        int r = region.index(cellIndex(c));
+        if (hTable[r])
             throw new IllegalStateException("[" + c.i + "," + c.j + "] should not be in the queue!");
 
-        if (pTable.get(cellIndex(c)) > 0) {
-            hTable.put(cellIndex(c), c);
-            Q.add(new MNKCellPriority(c.i, c.j, B.cellState(c.i, c.j), pTable.get(cellIndex(c))));
+        if (pTable[r] > 0) {
+            link(r, pTable[r]);
             // Nota: re-inseriamo c nella coda con la priorità che aveva nel momento in cui
             // è stata marcata.
-
-            if (Q.size() != hTable.size())
-                throw new IllegalStateException("Mismatch between queue and hash table.");
         }
     }
 
@@ -151,7 +227,8 @@ public class MovesQueue {
      * @return True se c è contenuta nella coda; False altrimenti
      */
     public boolean isContained(MNKCell c) {
-        return hTable.get(cellIndex(c)) != null;
+        int r = region.index(cellIndex(c));
+        return r != -1 && hTable[r];
     }
 
     /**
@@ -160,15 +237,26 @@ public class MovesQueue {
      * @return priorita' di c nella coda
      */
     public int getPriority(MNKCell c) {
-        return pTable.get(cellIndex(c));
+        return getPriority(cellIndex(c));
+    }
+
+    /**
+     * Complessita': O(1)
+     * @param x cellIndex della cella
+     * @return priorita' della cella nella coda (0 fuori da region)
+     */
+    public int getPriority(int x) {
+        int r = region.index(x);
+        return r == -1 ? 0 : pTable[r];
     }
 
 
     // Test
     public void printQueue() {
-        System.out.println("Queue size: " + Q.size());
-        for (MNKCellPriority cp : Q)
-            System.out.println(cp);
+        System.out.println("Queue size: " + size);
+        for (int p = top; p > 0; p--)
+            for (int r = head[p]; r != -1; r = next[r])
+                System.out.println("[" + cells[r] / N + "," + cells[r] % N + "] - priority=" + p);
         System.out.print('\n');
     }
 }
@@ -0,0 +1,202 @@
+package mnkgame;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ *  Pool di nodi a dimensione fissa per l'albero di MonteCarloPro. I nodi
+ *  sono indici interi e i loro campi sono memorizzati in array paralleli:
+ *  nessun oggetto viene allocato durante la ricerca e la memoria resta
+ *  limitata alla capacità scelta alla costruzione.
+ *
+ *  I figli di un nodo occupano un blocco contiguo first(x) ... first(x) +
+ *  count(x) - 1, allocato tutto insieme all'espansione. Il nodo 0 è la
+ *  radice. L'albero è condiviso tra i thread della ricerca: visite e
+ *  punteggi sono aggiornati atomicamente e l'espansione di un nodo è
+ *  protetta dal suo stato (LEAF, EXPANDING, EXPANDED), la cui scrittura
+ *  pubblica ai lettori i figli appena creati.
+ */
+public final class NodePool {
+    public static final int LEAF = 0, EXPANDING = 1, EXPANDED = 2;
+
+    /**
+     *  Byte occupati da un nodo, per dimensionare il pool in MB.
+     */
+    public static final int NODE_BYTES = 32;
+
+    private final int capacity;
+
+    /**
+     *  Per ogni nodo: cellIndex della mossa che porta al nodo, padre,
+     *  primo figlio e numero di figli.
+     */
+    private final int[] move, parent, first, count;
+
+    private final AtomicIntegerArray state, visits;
+
+    /**
+     *  Somma dei risultati delle simulazioni passate per il nodo, dal punto
+     *  di vista del giocatore che ha giocato move(x), in unità di 1/WIN.
+     */
+    private final AtomicLongArray score;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     *  Complessità: O(capacity)
+     *  @param capacity numero massimo di nodi
+     */
+    public NodePool(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid node pool capacity: " + capacity);
+
+        this.capacity = capacity;
+        move   = new int[capacity];
+        parent = new int[capacity];
+        first  = new int[capacity];
+        count  = new int[capacity];
+        state  = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        score  = new AtomicLongArray(capacity);
+        reset();
+    }
+
+    /**
+     *  Svuota il pool, lasciando la sola radice (senza mossa).
+     *  Complessità: O(1)
+     */
+    public void reset() {
+        next.set(1);
+        init(0, -1, -1);
+    }
+
+    private void init(int x, int m, int p) {
+        move[x]   = m;
+        parent[x] = p;
+        first[x]  = 0;
+        count[x]  = 0;
+        visits.set(x, 0);
+        score.set(x, 0);
+        state.set(x, LEAF);
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di nodi allocati
+     */
+    public int used() {
+        return Math.min(next.get(), capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int move(int x) {
+        return move[x];
+    }
+
+    public int parent(int x) {
+        return parent[x];
+    }
+
+    public int first(int x) {
+        return first[x];
+    }
+
+    public int count(int x) {
+        return count[x];
+    }
+
+    public int visits(int x) {
+        return visits.get(x);
+    }
+
+    public long score(int x) {
+        return score.get(x);
+    }
+
+    public boolean expanded(int x) {
+        return state.get(x) == EXPANDED;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return True se il thread corrente ha acquisito l'espansione del
+     *      nodo x, che deve poi concludere con expand() o release()
+     */
+    public boolean tryExpand(int x) {
+        return state.get(x) == LEAF && state.compareAndSet(x, LEAF, EXPANDING);
+    }
+
+    /**
+     *  Crea i figli di x, uno per mossa, e li rende visibili agli altri thread.
+     *  Complessità: O(n)
+     *  @param moves cellIndex delle mosse, nell'ordine in cui esplorarle
+     *  @return False se il pool è pieno: x resta una foglia
+     */
+    public boolean expand(int x, int[] moves, int n) {
+        int f = next.getAndAdd(n);
+        if (f + n > capacity || f + n < 0) {
+            release(x);
+            return false;
+        }
+
+        for (int k = 0; k < n; k++)
+            init(f + k, moves[k], x);
+        first[x] = f;
+        count[x] = n;
+        state.set(x, EXPANDED);
+        return true;
+    }
+
+    /**
+     *  Rinuncia all'espansione di x acquisita con tryExpand().
+     */
+    public void release(int x) {
+        state.set(x, LEAF);
+    }
+
+    /**
+     *  Complessità: O(1)
+     */
+    public void update(int x, int visits_delta, long score_delta) {
+        visits.addAndGet(x, visits_delta);
+        if (score_delta != 0)
+            score.addAndGet(x, score_delta);
+    }
+
+    /**
+     *  Copia in dst, che viene svuotato, il sottoalbero di radice x, che
+     *  diventa la radice di dst. Da chiamare senza ricerche in corso.
+     *  Complessità: O(s), dove s è la dimensione del sottoalbero
+     */
+    public void copySubtree(int x, NodePool dst) {
+        dst.next.set(1);
+        dst.init(0, -1, -1);
+        dst.visits.set(0, visits.get(x));
+        dst.score.set(0, score.get(x));
+
+        // Visita in ampiezza: queue[k] è il nodo di questo pool copiato in k
+        int[] queue = new int[Math.min(used(), dst.capacity)];
+        queue[0] = x;
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int src = queue[head];
+            int n = count[src];
+            if (state.get(src) != EXPANDED || tail + n > dst.capacity)
+                continue;
+
+            dst.first[head] = tail;
+            dst.count[head] = n;
+            for (int k = 0; k < n; k++) {
+                int c = first[src] + k;
+                dst.init(tail, move[c], head);
+                dst.visits.set(tail, visits.get(c));
+                dst.score.set(tail, score.get(c));
+                queue[tail++] = c;
+            }
+            dst.state.set(head, EXPANDED);
+        }
+        dst.next.set(tail);
+    }
+}
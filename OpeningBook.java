@@ -0,0 +1,131 @@
+package mnkgame;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ *  Libro delle aperture per una configurazione (M,N,K): associa all'hash
+ *  Zobrist canonico di una configurazione (ZobristHash.canonical()) la
+ *  mossa da giocare nella configurazione canonica, come cellIndex.
+ *
+ *  Il file è binario, big-endian:
+ *
+ *  - intestazione: MAGIC, M, N, K e numero di entry (5 int);
+ *
+ *  - entry ordinate per chiave crescente, ognuna di RECORD byte: chiave
+ *    (long) e mossa (int).
+ *
+ *  Il file viene mappato in memoria in sola lettura e interrogato con una
+ *  ricerca binaria direttamente sul buffer, senza alcun parsing.
+ *  I file vengono scritti da MNKBookGenerator.
+ */
+public final class OpeningBook {
+    /**
+     *  "MNK2": le chiavi Zobrist sono cambiate rispetto ai libri "MNKB",
+     *  che vengono rifiutati come non validi e vanno rigenerati.
+     */
+    private static final int MAGIC  = 0x4D4E4B32; // "MNK2"
+    private static final int HEADER = 5 * Integer.BYTES;
+    private static final int RECORD = Long.BYTES + Integer.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private OpeningBook(MappedByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size   = size;
+    }
+
+    /**
+     *  @return nome del file del libro per (M,N,K)
+     */
+    public static String fileName(int M, int N, int K) {
+        return "book-" + M + "x" + N + "x" + K + ".bin";
+    }
+
+    /**
+     *  Mappa in memoria il libro per (M,N,K) contenuto nella cartella dir.
+     *  Complessità: O(1)
+     *  @return il libro, oppure null se il file non esiste
+     *  @throws IllegalArgumentException se il file non è un libro valido per (M,N,K)
+     */
+    public static OpeningBook open(Path dir, int M, int N, int K) {
+        Path file = dir.resolve(fileName(M, N, K));
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER)
+                throw new IllegalArgumentException("Truncated opening book " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC)
+                throw new IllegalArgumentException("Opening book " + file + " has an unknown format: regenerate it with MNKBookGenerator");
+            if (buffer.getInt(4) != M || buffer.getInt(8) != N || buffer.getInt(12) != K)
+                throw new IllegalArgumentException("Opening book " + file + " is not for " + M + "x" + N + "x" + K);
+            int size = buffer.getInt(16);
+            if (size < 0 || channel.size() != HEADER + (long) size * RECORD)
+                throw new IllegalArgumentException("Corrupted opening book " + file);
+            return new OpeningBook(buffer, size);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read opening book " + file, e);
+        }
+    }
+
+    /**
+     *  Complessità: O(log n), dove n è il numero di entry
+     *  @param key hash Zobrist della configurazione
+     *  @return cellIndex della mossa da giocare, oppure -1 se key non è nel libro
+     */
+    public int probe(long key) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = buffer.getLong(HEADER + mid * RECORD);
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return buffer.getInt(HEADER + mid * RECORD + Long.BYTES);
+        }
+        return -1;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di entry del libro
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Scrive nella cartella dir il libro per (M,N,K) con le entry di book.
+     *  Complessità: O(n log n), dove n è il numero di entry
+     *  @param book mosse, come cellIndex, indicizzate per hash Zobrist
+     */
+    public static void write(Path dir, int M, int N, int K, Map<Long, Integer> book) throws IOException {
+        long[] keys = new long[book.size()];
+        int n = 0;
+        for (long key : book.keySet())
+            keys[n++] = key;
+        Arrays.sort(keys);
+
+        Path file = dir.resolve(fileName(M, N, K));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(M);
+            out.writeInt(N);
+            out.writeInt(K);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                out.writeLong(key);
+                out.writeInt(book.get(key));
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package mnkgame;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ *  Statistiche di ricerca relative a una selectCell. I contatori sono
+ *  campi semplici, incrementati dal thread che li possiede senza
+ *  sincronizzazione: ogni thread della ricerca ha il proprio oggetto e
+ *  il thread principale somma quelli degli helper a fine mossa (add()).
+ */
+public final class SearchStatistics {
+    long nodes;
+    long tt_probes, tt_hits, tt_stores, tt_overwrites;
+    long cutoffs, first_move_cutoffs;
+    long lmr_reductions, lmr_researches;
+    long beam_pruned;
+    long elapsed_ns;
+    int depth;
+
+    /**
+     *  Dimensione degli StrategySet dei due giocatori a fine mossa, e
+     *  dimensione massima raggiunta durante la ricerca.
+     */
+    int max_set, min_set, max_set_peak, min_set_peak;
+
+    /**
+     *  Profondità, durata e nodi di ogni iterazione completata
+     *  dall'iterative deepening del thread principale.
+     */
+    private int[] iteration_depth = new int[16];
+    private long[] iteration_ns = new long[16], iteration_nodes = new long[16];
+    private int iterations;
+
+    /**
+     *  Azzera tutte le statistiche.
+     *  Complessità: O(1)
+     */
+    void reset() {
+        nodes = tt_probes = tt_hits = tt_stores = tt_overwrites = 0;
+        cutoffs = first_move_cutoffs = elapsed_ns = 0;
+        lmr_reductions = lmr_researches = beam_pruned = 0;
+        depth = max_set = min_set = max_set_peak = min_set_peak = 0;
+        iterations = 0;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param first True se il taglio è avvenuto sulla prima mossa esplorata
+     */
+    void cutoff(boolean first) {
+        cutoffs++;
+        if (first)
+            first_move_cutoffs++;
+    }
+
+    /**
+     *  Registra un'iterazione completata.
+     *  Complessità: O(1) ammortizzato
+     */
+    void iteration(int depth, long ns, long nodes) {
+        if (iterations == iteration_ns.length) {
+            iteration_depth = Arrays.copyOf(iteration_depth, 2 * iterations);
+            iteration_ns    = Arrays.copyOf(iteration_ns, 2 * iterations);
+            iteration_nodes = Arrays.copyOf(iteration_nodes, 2 * iterations);
+        }
+        iteration_depth[iterations] = depth;
+        iteration_ns[iterations]    = ns;
+        iteration_nodes[iterations] = nodes;
+        iterations++;
+        this.depth = Math.max(this.depth, depth);
+    }
+
+    /**
+     *  Somma i contatori di un helper a quelli di questo oggetto.
+     *  Complessità: O(1)
+     */
+    void add(SearchStatistics helper) {
+        nodes              += helper.nodes;
+        tt_probes          += helper.tt_probes;
+        tt_hits            += helper.tt_hits;
+        tt_stores          += helper.tt_stores;
+        tt_overwrites      += helper.tt_overwrites;
+        cutoffs            += helper.cutoffs;
+        first_move_cutoffs += helper.first_move_cutoffs;
+        lmr_reductions     += helper.lmr_reductions;
+        lmr_researches     += helper.lmr_researches;
+        beam_pruned        += helper.beam_pruned;
+        depth               = Math.max(depth, helper.depth);
+    }
+
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     *  @return nodi visitati al secondo
+     */
+    public double nps() {
+        return elapsed_ns == 0 ? 0 : nodes * 1e9 / elapsed_ns;
+    }
+
+    public double elapsedMillis() {
+        return elapsed_ns / 1e6;
+    }
+
+    /**
+     *  @return profondità massima completata da un thread
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public long ttProbes() {
+        return tt_probes;
+    }
+
+    public long ttHits() {
+        return tt_hits;
+    }
+
+    public long ttStores() {
+        return tt_stores;
+    }
+
+    /**
+     *  @return numero di store che hanno sostituito l'entry valida di
+     *      un'altra configurazione
+     */
+    public long ttOverwrites() {
+        return tt_overwrites;
+    }
+
+    public double ttHitRate() {
+        return tt_probes == 0 ? 0 : (double) tt_hits / tt_probes;
+    }
+
+    public long cutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     *  @return frazione dei tagli beta avvenuti sulla prima mossa
+     *      esplorata: misura la qualità dell'ordinamento delle mosse
+     */
+    public double firstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) first_move_cutoffs / cutoffs;
+    }
+
+    /**
+     *  @return mosse cercate a profondità ridotta (late move reductions)
+     */
+    public long lmrReductions() {
+        return lmr_reductions;
+    }
+
+    /**
+     *  @return mosse ridotte che hanno richiesto la ricerca a profondità piena
+     */
+    public long lmrResearches() {
+        return lmr_researches;
+    }
+
+    /**
+     *  @return mosse scartate dal generatore di mosse candidate
+     */
+    public long beamPruned() {
+        return beam_pruned;
+    }
+
+    /**
+     *  @return fattore di ramificazione effettivo: rapporto tra i nodi delle
+     *      ultime due iterazioni completate, oppure nodes^(1/depth) se ne è
+     *      stata completata una sola
+     */
+    public double effectiveBranchingFactor() {
+        if (iterations >= 2 && iteration_nodes[iterations - 2] > 0)
+            return (double) iteration_nodes[iterations - 1] / iteration_nodes[iterations - 2];
+        return depth == 0 ? 0 : Math.pow(nodes, 1.0 / depth);
+    }
+
+    public int maxSetSize() {
+        return max_set;
+    }
+
+    public int minSetSize() {
+        return min_set;
+    }
+
+    public int maxSetPeak() {
+        return max_set_peak;
+    }
+
+    public int minSetPeak() {
+        return min_set_peak;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    /**
+     *  @param k indice dell'iterazione, in [0, iterations())
+     */
+    public int iterationDepth(int k) {
+        return iteration_depth[k];
+    }
+
+    /**
+     *  @param k indice dell'iterazione, in [0, iterations())
+     */
+    public double iterationMillis(int k) {
+        return iteration_ns[k] / 1e6;
+    }
+
+    /**
+     *  @param k indice dell'iterazione, in [0, iterations())
+     */
+    public long iterationNodes(int k) {
+        return iteration_nodes[k];
+    }
+
+    /**
+     *  Complessità: O(i), dove i è il numero di iterazioni
+     *  @return statistiche su una riga JSON
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256 + 48 * iterations);
+        sb.append("{\"nodes\":").append(nodes)
+          .append(",\"nps\":").append(Math.round(nps()))
+          .append(",\"ms\":").append(Math.round(elapsedMillis()))
+          .append(",\"depth\":").append(depth)
+          .append(",\"tt_probes\":").append(tt_probes)
+          .append(",\"tt_hits\":").append(tt_hits)
+          .append(",\"tt_stores\":").append(tt_stores)
+          .append(",\"tt_overwrites\":").append(tt_overwrites)
+          .append(",\"cutoffs\":").append(cutoffs)
+          .append(",\"lmr_reductions\":").append(lmr_reductions)
+          .append(",\"lmr_researches\":").append(lmr_researches)
+          .append(",\"beam_pruned\":").append(beam_pruned)
+          .append(",\"first_move_cutoff_rate\":").append(String.format(Locale.ROOT, "%.4f", firstMoveCutoffRate()))
+          .append(",\"ebf\":").append(String.format(Locale.ROOT, "%.3f", effectiveBranchingFactor()))
+          .append(",\"max_set\":").append(max_set)
+          .append(",\"min_set\":").append(min_set)
+          .append(",\"max_set_peak\":").append(max_set_peak)
+          .append(",\"min_set_peak\":").append(min_set_peak)
+          .append(",\"iterations\":[");
+        for (int k = 0; k < iterations; k++) {
+            if (k > 0)
+                sb.append(',');
+            sb.append("{\"depth\":").append(iteration_depth[k])
+              .append(",\"ms\":").append(String.format(Locale.ROOT, "%.3f", iterationMillis(k)))
+              .append(",\"nodes\":").append(iteration_nodes[k]).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -1,6 +1,6 @@
 package mnkgame;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * Rappresenta l'insieme di MNKStrategy possibili associate a uno specifico
@@ -8,13 +8,24 @@ import java.util.*;
  * L'algoritmo mantiene quindi due StrategySet distinti: uno per il giocatore
  * che massimizza
  * e l'altro per il giocatore che minimizza.
+ *
+ * Una MNKStrategy è una finestra della WindowTable, identificata dal suo
+ * id: cella iniziale e direzione si ricavano dall'id. I contatori stanno in
+ * array paralleli indicizzati per slot, creati la prima volta che il player
+ * genera la finestra: la memoria cresce con le finestre generate e non con
+ * l'area della scacchiera. Il set è un array di slot, quindi le scansioni
+ * sono cicli lineari su interi, senza oggetti né liste di celle.
  */
 public class StrategySet {
 
     /**
-     * Set delle MNKStrategy
+     * Set delle MNKStrategy: set[0] ... set[set_size - 1] sono gli slot delle
+     * finestre nel set, in nessun ordine particolare. La rimozione sposta
+     * l'ultima finestra nella posizione liberata (swap-with-last), quindi
+     * non ci sono scorrimenti.
      */
-    private final ArrayList<MNKStrategy> set;
+    private int[] set;
+    private int set_size;
 
     public final MNKCellState player, adv;
 
@@ -22,80 +33,401 @@ public class StrategySet {
      * Stack delle MNKStrategy generate. Per ogni turno, mantiene il numero
      * di MNKStrategy che il player genera con una data mossa.
      */
-    private final ArrayDeque<Integer> generated_stack;
+    private int[] generated_stack;
 
     /**
-     * Stack delle MNKStrategy invalide. Mantiene, per ogni turno, la lista
-     * di MNKStrategy ha reso invalide con la sua mossa.
+     * Stack delle MNKStrategy invalide. Per ogni turno, invalid_stack mantiene
+     * la posizione in invalid_trail da cui iniziano le MNKStrategy rese
+     * invalide con la mossa; invalid_trail le memorizza come coppie
+     * (slot, indice nel set al momento della rimozione). Ripristinandole in
+     * ordine inverso, ogni finestra torna nella sua posizione e quella che
+     * l'aveva sostituita torna in fondo: il set ritrova esattamente lo
+     * stato precedente alla mossa.
      */
-    private final ArrayDeque<ArrayList<InvMNKStrategy>> invalid_stack;
+    private int[] invalid_stack, invalid_trail;
+
+    /**
+     * Numero di turni sugli stack e dimensione di invalid_trail.
+     */
+    private int turn, trail_size;
 
     /**
      * Numero di MNKStrategy vincenti (a K-1 simboli) nel set.
      */
     private int win_count;
 
+    /**
+     * Liste delle MNKStrategy di minaccia del set, mantenute da add(),
+     * remove(), update() e undo(): threats[0][0] ... threats[0][threat_size[0] - 1]
+     * sono gli slot con K-1 simboli, threats[1] quelli con K-2.
+     * tpos[s] è la posizione dello slot s nella sua lista, oppure -1.
+     * Così freeCells() e winningCell() visitano solo le minacce, non
+     * tutto il set.
+     */
+    private int[][] threats;
+    private final int[] threat_size = new int[2];
+    private int[] tpos;
+
+    /**
+     * Dimensione massima raggiunta dal set dall'ultima resetMaxSize().
+     */
     private int max_size;
 
     /**
-     * Classe ausiliaria per invalid_stack. Memorizza una MNKStrategy con
-     * il suo indice nel set nel momento in cui è stata resa invalida.
+     * Tabella delle finestre della scacchiera, condivisa tra i due set.
      */
-    private static class InvMNKStrategy {
-        private final MNKStrategy S;
-        private final int index;
+    private final WindowTable W;
 
-        private InvMNKStrategy(MNKStrategy S, int i) {
-            this.S = S;
-            index = i;
-        }
+    /**
+     * Slot delle finestre generate almeno una volta: slot_of[4*r + d] è lo
+     * slot della finestra che parte dalla cella in posizione r di region
+     * in direzione d, oppure -1. region copre le celle iniziali delle
+     * finestre passanti per le celle marcate e si allarga in update().
+     */
+    private final BoardRegion region;
+    private int[] slot_of;
 
-        @Override
-        public String toString() {
-            return S.toString();
-        }
-    }
+    /**
+     * Per ogni slot s: window[s] è l'id della finestra, my_cells[s] e
+     * adv_cells[s] il numero di celle del player e dell'avversario. I
+     * contatori sono significativi per le finestre nel set e per quelle
+     * invalidate ancora su invalid_trail, che li ritrovano intatti
+     * all'undo; una finestra è valida se adv_cells[s] == 0. slots è il
+     * numero di slot creati: uno slot non viene mai liberato, così
+     * l'undo ritrova ogni finestra nel suo slot.
+     */
+    private int[] window, my_cells, adv_cells;
+    private int slots;
+    private static final int INITIAL_SLOTS = 256;
+
+    private final int K;
+
+    /**
+     * pos[s] è la posizione dello slot s in set, oppure -1 se non è
+     * nel set: sostituisce i controlli O(n) set.contains() e set.indexOf().
+     */
+    private int[] pos;
+
+    /**
+     * Buffer per le finestre passanti per una cella e per quelle di cui è
+     * un estremo, lette dalla WindowTable, e per la posizione della cella
+     * in ognuna delle finestre passanti.
+     */
+    private final int[] windows_buf, windows_at;
 
     /**
+     * Valutazione a pattern. Ogni MNKStrategy S del set contribuisce con
+     * pattern[3*shape(s) + e], dove e è il numero di estremi aperti della
+     * finestra (liberi o del player; un estremo dell'avversario o fuori dalla
+     * scacchiera è chiuso). term[s] è il contributo attuale dello slot s
+     * (0 se non è nel set) e score la somma dei contributi.
+     *
+     * Per K fino a MASK_K la forma di una finestra è la sua occupazione:
+     * mask[s] ha il bit k acceso se la k-esima cella della finestra è del
+     * player (le finestre del set non hanno celle dell'avversario), così
+     * le forme con buchi valgono meno di quelle compatte. Per K maggiori la
+     * tabella avrebbe 3*2^K elementi e la forma è il solo numero di simboli.
+     */
+    private final long[] pattern;
+    private final boolean by_mask;
+    private int[] mask;
+    private static final int MASK_K = 12;
+    private long[] term;
+    private long score;
+
+    /**
+     * Le modifiche a term fatte da update() sono registrate come coppie
+     * (slot, valore precedente) su term_trail_id/term_trail_value, così che
+     * undo() le annulli in ordine inverso; term_stack[turn] è la posizione
+     * da cui iniziano quelle del turno. Ogni turno ne registra al più
+     * term_per_turn. Come gli altri stack per turno, il trail parte da
+     * TERM_TURNS turni e raddoppia quando serve, così la memoria cresce con
+     * le mosse giocate e non con l'area della scacchiera.
+     */
+    private int[] term_stack;
+    private int[] term_trail_id;
+    private long[] term_trail_value;
+    private int term_top;
+    private final int term_per_turn;
+    private static final int TERM_TURNS = 64;
+
+    /**
+     * Le strutture partono piccole e update() le allunga quando servono:
+     * per slot quando il player genera finestre nuove, per turno quando si
+     * supera la profondità raggiunta finora. Dopo le prime ricerche non
+     * viene più allocato nulla.
+     * Complessita': O(K + area(region))
+     * 
      * @param B      configurazione attuale di gioco
      * @param player giocatore a cui è associato il set
      */
-    public StrategySet(MNKBoard B, MNKCellState player) {
-        set             = new ArrayList<>(4 * B.M * B.N);
+    public StrategySet(MNKBitBoard B, MNKCellState player) {
+        W               = WindowTable.get(B.M, B.N, B.K);
+        K               = B.K;
         this.player     = player;
         adv             = player == MNKCellState.P1 ? MNKCellState.P2 : MNKCellState.P1;
-        generated_stack = new ArrayDeque<>(B.getFreeCells().length);
-        invalid_stack   = new ArrayDeque<>(B.getFreeCells().length);
+        region          = new BoardRegion(B.M, B.N);
+        slot_of         = new int[4 * region.area()];
+        window          = new int[INITIAL_SLOTS];
+        my_cells        = new int[INITIAL_SLOTS];
+        mask            = new int[INITIAL_SLOTS];
+        adv_cells       = new int[INITIAL_SLOTS];
+        pos             = new int[INITIAL_SLOTS];
+        term            = new long[INITIAL_SLOTS];
+        slots           = 0;
+        set             = new int[INITIAL_SLOTS];
+        set_size        = 0;
+        threats         = new int[2][INITIAL_SLOTS];
+        tpos            = new int[INITIAL_SLOTS];
+        windows_buf     = new int[4 * B.K + 8];
+        windows_at      = new int[4 * B.K];
+        generated_stack = new int[TERM_TURNS];
+        invalid_stack   = new int[TERM_TURNS];
+        invalid_trail   = new int[2 * INITIAL_SLOTS];
+        turn            = trail_size = 0;
         win_count       = 0;
         max_size        = 0;
+        by_mask         = B.K <= MASK_K;
+        pattern         = new long[3 * (by_mask ? 1 << B.K : B.K + 1)];
+        score           = 0;
+        term_stack      = new int[TERM_TURNS];
+        term_per_turn   = 4 * B.K + 8;
+        term_trail_id   = new int[term_per_turn * TERM_TURNS];
+        term_trail_value = new long[term_trail_id.length];
+        term_top        = 0;
+        Arrays.fill(slot_of, -1);
+
+        // Il valore di una MNKStrategy cresce di 4 volte per ogni simbolo
+        // in più, ed è pesato 1, 2 o 3 a seconda degli estremi aperti
+        if (by_mask) {
+            for (int m = 1; m < 1 << B.K; m++)
+                for (int e = 0; e < 3; e++)
+                    pattern[3 * m + e] = shapeValue(m, e);
+        } else {
+            for (int size = 1; size <= B.K; size++)
+                for (int e = 0; e < 3; e++)
+                    pattern[3 * size + e] = (long) (e + 1) << (2 * size);
+        }
+    }
+
+    /**
+     * Valore di una finestra con occupazione m ed e estremi aperti. Come
+     * per il solo numero di simboli, ma pesato sulla forma: pieno se i
+     * simboli sono contigui, 3/4 con un solo buco tra il primo e l'ultimo
+     * (forma spezzata, che chiude comunque con una mossa in più), 1/2 con
+     * più buchi. A K-1 simboli ogni forma è a una mossa dalla vittoria e
+     * vale quanto quella compatta.
+     * Complessita': O(1)
+     */
+    private long shapeValue(int m, int e) {
+        int size  = Integer.bitCount(m);
+        int holes = 32 - Integer.numberOfLeadingZeros(m) - Integer.numberOfTrailingZeros(m) - size;
+        int shape = size >= K - 1 || holes == 0 ? 4 : holes == 1 ? 3 : 2;
+        return ((long) (e + 1) << (2 * size)) * shape >> 2;
+    }
+
+    private int cellIndex(MNKCell c, MNKBitBoard B) {
+        return c.i * B.N + c.j;
+    }
+
+    /**
+     * Complessita': O(1)
+     * @return slot della finestra id, oppure -1 se non è mai stata generata
+     */
+    private int slot(int id) {
+        int r = region.index(id >> 2);
+        return r == -1 ? -1 : slot_of[4 * r + WindowTable.direction(id)];
+    }
+
+    /**
+     * Crea lo slot della finestra id, allungando gli array per slot se
+     * sono pieni.
+     * Complessita': O(1) ammortizzato
+     */
+    private int newSlot(int id) {
+        if (slots == window.length) {
+            int n = 2 * slots;
+            window    = Arrays.copyOf(window, n);
+            my_cells  = Arrays.copyOf(my_cells, n);
+            adv_cells = Arrays.copyOf(adv_cells, n);
+            pos       = Arrays.copyOf(pos, n);
+            mask      = Arrays.copyOf(mask, n);
+            term      = Arrays.copyOf(term, n);
+            set       = Arrays.copyOf(set, n);
+            tpos      = Arrays.copyOf(tpos, n);
+            threats[0] = Arrays.copyOf(threats[0], n);
+            threats[1] = Arrays.copyOf(threats[1], n);
+        }
+        window[slots] = id;
+        pos[slots]    = -1;
+        tpos[slots]   = -1;
+        slot_of[4 * region.index(id >> 2) + WindowTable.direction(id)] = slots;
+        return slots++;
+    }
+
+    /**
+     * Garantisce che gli stack abbiano posto per il turno corrente e che
+     * region copra le finestre passanti per la cella ci e quelle di cui
+     * ci è un estremo.
+     * Complessita': O(1) ammortizzato
+     */
+    private void reserve(int ci) {
+        if (turn == term_stack.length) {
+            generated_stack = Arrays.copyOf(generated_stack, 2 * turn);
+            invalid_stack   = Arrays.copyOf(invalid_stack, 2 * turn);
+            term_stack      = Arrays.copyOf(term_stack, 2 * turn);
+        }
+        if (term_top + term_per_turn > term_trail_id.length) {
+            term_trail_id    = Arrays.copyOf(term_trail_id, 2 * term_trail_id.length);
+            term_trail_value = Arrays.copyOf(term_trail_value, term_trail_id.length);
+        }
+        if (trail_size + 8 * K > invalid_trail.length)
+            invalid_trail = Arrays.copyOf(invalid_trail, 2 * invalid_trail.length + 8 * K);
+        if (region.cover(ci, K))
+            slot_of = region.grow(slot_of, 4, -1);
+    }
+
+    /**
+     * Complessita': O(1)
+     * @return lista di minaccia (0 per K-1 simboli, 1 per K-2) delle
+     *         MNKStrategy con my simboli, oppure -1
+     */
+    private int threatList(int my) {
+        return my == K - 1 ? 0 : my == K - 2 ? 1 : -1;
+    }
+
+    /**
+     * Inserisce lo slot s, che è nel set, nella lista di minaccia
+     * corrispondente ai suoi simboli, se ce n'è una.
+     * Complessita': O(1)
+     */
+    private void threatAdd(int s) {
+        int l = threatList(my_cells[s]);
+        if (l == -1)
+            return;
+        threats[l][threat_size[l]] = s;
+        tpos[s] = threat_size[l]++;
+    }
+
+    /**
+     * Toglie lo slot s dalla sua lista di minaccia, se è in una lista,
+     * sostituendolo con l'ultimo della lista.
+     * Complessita': O(1)
+     */
+    private void threatRemove(int s) {
+        int l = threatList(my_cells[s]);
+        if (l == -1)
+            return;
+        int t = tpos[s], last = threats[l][--threat_size[l]];
+        threats[l][t] = last;
+        tpos[last]    = t;
+        tpos[s]       = -1;
+    }
+
+    /**
+     * Complessita': O(1)
+     * @return True se la finestra nello slot s è a una mossa dalla vittoria
+     */
+    private boolean winning(int s) {
+        return my_cells[s] >= K - 1;
+    }
+
+    /**
+     * Complessita': O(1)
+     * @return contributo della finestra nello slot s alla valutazione,
+     *         nella configurazione attuale
+     */
+    private long pattern(int s, MNKBitBoard B) {
+        int open = 0;
+        for (int side = 0; side < 2; side++) {
+            int e = W.end(window[s], side);
+            if (e != -1) {
+                MNKCell c = B.cell(e);
+                if (B.cellState(c.i, c.j) != adv)
+                    open++;
+            }
+        }
+        return pattern[3 * (by_mask ? mask[s] : my_cells[s]) + open];
+    }
+
+    /**
+     * Aggiorna il contributo dello slot s, registrando il valore
+     * precedente su term_trail.
+     * Complessita': O(1)
+     */
+    private void setTerm(int s, long value) {
+        term_trail_id[term_top]      = s;
+        term_trail_value[term_top++] = term[s];
+        score  += value - term[s];
+        term[s] = value;
+    }
+
+    /**
+     * Valuta se la finestra id può essere generata, cioè se non contiene
+     * celle dell'avversario. Il controllo non usa i contatori di id: una
+     * finestra invalida può essere ancora referenziata da invalid_trail
+     * e i suoi contatori servono intatti al momento dell'undo.
+     * Complessita': O(K)
+     * @param id identificativo della finestra
+     * @param B  configurazione attuale di gioco
+     * @return True se la finestra id non contiene celle di adv
+     */
+    private boolean valid(int id, MNKBitBoard B) {
+        for (int k = 0; k < B.K; k++) {
+            MNKCell c = B.cell(W.cell(id, k));
+            if (B.cellState(c.i, c.j) == adv)
+                return false;
+        }
+        return true;
     }
 
     /**
+     * Ricalcola i contatori dello slot s a partire dalla configurazione
+     * attuale. Usata quando la finestra viene (ri)generata nel set.
+     * Complessita': O(K)
+     */
+    private void reset(int s, MNKBitBoard B) {
+        my_cells[s] = adv_cells[s] = mask[s] = 0;
+        for (int k = 0; k < K; k++) {
+            MNKCell c = B.cell(W.cell(window[s], k));
+            MNKCellState state = B.cellState(c.i, c.j);
+            if (state == player) {
+                my_cells[s]++;
+                if (by_mask)
+                    mask[s] |= 1 << k;
+            }
+            else if (state != MNKCellState.FREE)
+                adv_cells[s]++;
+        }
+    }
+
+    /**
+     * Aggiunge lo slot s in posizione index, spostando in fondo la
+     * finestra che la occupava: è l'inverso esatto di remove(index).
      * Complessita': O(K)
      * 
-     * @param S     MNKStrategy che si vuole aggiungere al set
+     * @param s     slot della finestra che si vuole aggiungere al set
      * @param B     configurazione attuale di gioco
      * @param Q     priority queue delle mosse
-     * @param index indice al quale viene aggiunto S
+     * @param index indice al quale viene aggiunta la finestra, al più size()
      */
-    private void add(MNKStrategy S, MNKBoard B, MovesQueue Q, int index) {
-        /*
-         * if (B.getMarkedCells().length == 2) {
-         * System.out.println("ADD-> la strategia è: " + S);
-         * }
-         */
-        set.add(index, S);
-        if (set.size()>max_size)
-            max_size = set.size();
-        if (S.winning())
+    private void add(int s, MNKBitBoard B, MovesQueue Q, int index) {
+        if (index < set_size) {
+            int moved = set[index];
+            set[set_size] = moved;
+            pos[moved]    = set_size;
+        }
+        set[index] = s;
+        pos[s]     = index;
+        set_size++;
+        if (set_size > max_size)
+            max_size = set_size;
+        if (winning(s))
             win_count++;
+        threatAdd(s);
 
-        for (MNKCell cell : S.range()) {
-            /*
-             * if (B.getMarkedCells().length == 2) {
-             * System.out.println("ADD-> La casella è: " + cell);
-             * }
-             */
+        for (int k = 0; k < B.K; k++) {
+            MNKCell cell = B.cell(W.cell(window[s], k));
             if (B.cellState(cell.i, cell.j) == MNKCellState.FREE) {
                 if (Q.isContained(cell)) {
                     Q.shiftPriority(cell, B, Q.getPriority(cell) + 1);
@@ -107,27 +439,25 @@ public class StrategySet {
     }
 
     /**
+     * Rimuove la finestra in posizione index, sostituendola con l'ultima.
      * Complessita': O(K)
      * 
-     * @param S MNKStrategy che si vuole rimuovere dal set (poiché invalidata)
-     * @param B configurazione attuale di gioco
-     * @param Q attuale priority queue delle mosse
+     * @param index indice nel set della finestra che si vuole rimuovere
+     *              (poiché invalidata)
+     * @param B     configurazione attuale di gioco
+     * @param Q     attuale priority queue delle mosse
      */
-    private void remove(MNKStrategy S, MNKBoard B, MovesQueue Q) {
-        /*
-         * if (B.getMarkedCells().length == 2) {
-         * System.out.println("REMOVE-> la strategia è: " + S);
-         * }
-         */
-        if (S.winning())
+    private void remove(int index, MNKBitBoard B, MovesQueue Q) {
+        int s = set[index], last = set[--set_size];
+        set[index] = last;
+        pos[last]  = index;
+        pos[s]     = -1;
+        if (winning(s))
             win_count--;
+        threatRemove(s);
 
-        for (MNKCell cell : S.range()) {
-            /*
-             * if (B.getMarkedCells().length == 2) {
-             * System.out.println("REMOVE-> La casella è: " + cell);
-             * }
-             */
+        for (int k = 0; k < B.K; k++) {
+            MNKCell cell = B.cell(W.cell(window[s], k));
             if (B.cellState(cell.i, cell.j) == MNKCellState.FREE) {
                 if (Q.isContained(cell)) {
                     Q.shiftPriority(cell, B, Q.getPriority(cell) - 1);
@@ -137,114 +467,124 @@ public class StrategySet {
     }
 
     /**
-     * Funzione "compagno" di markCell(c). E' strutturata nel modo seguente:
+     * Funzione "compagno" di markCell(c). Per ogni finestra passante per c
+     * (al più 4*K, calcolate dalla WindowTable):
      *
-     * 1) per ogni MNKStrategy S tale che S contiene c, aggiunge
-     * c ad S;
+     * 1) se la MNKStrategy corrispondente è nel set, aggiunge c ad S;
      *
-     * 2) genera a partire da c al più 8 nuove MKNStrategy (una per
-     * direzione) e aggiungi quelle valide al set.
+     * 2) altrimenti, se c appartiene al player, genera la MNKStrategy
+     * e la aggiunge al set se è valida.
      *
-     * Complessita': O(n), dove n è la dimensione del set
+     * Notare che una singola mossa può solo invalidare (se c è dell'avversario)
+     * oppure solo generare (se c è del player), mai entrambe le cose.
+     *
+     * Complessita': O(K^2), indipendentemente dalla dimensione del set
      * 
      * @param c cella marcata nell'algoritmo
-     * @param B MNKBoard di gioco
+     * @param B MNKBitBoard di gioco
      */
-    public void update(MNKCell c, MNKBoard B, MovesQueue Q) {
+    public void update(MNKCell c, MNKBitBoard B, MovesQueue Q) {
         if (B.cellState(c.i, c.j) == MNKCellState.FREE) {
             throw new IllegalArgumentException("Unmarked cell passed as argument!");
         }
 
         /*
-         * if (B.cellState(c.i, c.j) == adv) {
-         * System.out.println("\n" + "---------------------------" +
-         * "Sono il giocatore " + player
-         * + " e il mio avversario ha giocato la cella : [" + c.i + "," + c.j + "] "
-         * + "---------------------------" + "\n");
-         * } else {
-         * System.out.println("\n" + "---------------------------" +
-         * "Sono il giocatore " + player
-         * + " e ho giocato la cella : [" + c.i + "," + c.j + "] " +
-         * "---------------------------" + "\n");
-         * }
-         */
-
-        // 1)
-        /* -------------------------------------------------- */
-        Iterator<MNKStrategy> iter = set.iterator();
-        int t = 0;
-
-        /*
-         * Si costruisce l'insieme di MNKStrategy rese invalide in questo turno e
-         * lo si spinge sullo stack. Notare che questo insieme sarà vuoto se la cella c
-         * marcata
-         * è una mossa del giocatore a cui appartiene il set, poiché un giocatore non
-         * può invalidare
-         * le sue stesse MNKStrategy.
+         * Le MNKStrategy rese invalide in questo turno vengono accodate su
+         * invalid_trail a partire da trail_size. Notare che questo insieme sarà
+         * vuoto se la cella c marcata è una mossa del giocatore a cui appartiene
+         * il set, poiché un giocatore non può invalidare le sue stesse MNKStrategy.
          */
-        ArrayList<InvMNKStrategy> invalids = new ArrayList<>();
-        invalid_stack.push(invalids);
-
-        while (iter.hasNext()) {
-            MNKStrategy S = iter.next();
-            if (!S.valid())
-                throw new IllegalStateException("Invalid MNStrategy " + S + " found in update.");
-
-            if (S.contains(c)) {
-                boolean winning = S.winning();
-                S.add(c, B);
-                if (!S.valid()) { // S è stata invalidata
-                    invalids.add(new InvMNKStrategy(S, t));
-                    remove(S, B, Q);
-                    iter.remove();
-                } else if (!winning && S.winning())
-                    win_count++;
+        boolean mine = B.cellState(c.i, c.j) == player;
+        int generated = 0, ci = cellIndex(c, B);
+        reserve(ci);
+        invalid_stack[turn] = trail_size;
+        term_stack[turn]    = term_top;
+
+        int n = W.windows(ci, windows_buf, windows_at, 0);
+        for (int k = 0; k < n; k++) {
+            int id = windows_buf[k], s = slot(id);
+
+            // 1)
+            /* -------------------------------------------------- */
+            if (s != -1 && pos[s] != -1) {
+                if (adv_cells[s] != 0)
+                    throw new IllegalStateException("Invalid MNKStrategy " + toString(s) + " found in update.");
+
+                if (!mine) { // La finestra è stata invalidata
+                    adv_cells[s]++;
+                    int t = pos[s];
+                    invalid_trail[trail_size++] = s;
+                    invalid_trail[trail_size++] = t;
+                    remove(t, B, Q);
+                    setTerm(s, 0);
+                } else {
+                    threatRemove(s);
+                    if (++my_cells[s] == K - 1)
+                        win_count++;
+                    threatAdd(s);
+                    if (by_mask)
+                        mask[s] |= 1 << windows_at[k];
+                    if (my_cells[s] > K)
+                        throw new IllegalStateException("More than K cells in " + toString(s));
+                    setTerm(s, pattern(s, B));
+                }
             }
-
-            t++;
+            /* -------------------------------------------------- */
+
+            // 2)
+            /* -------------------------------------------------- */
+            else if (mine && valid(id, B)) {
+                if (s == -1)
+                    s = newSlot(id);
+                reset(s, B);
+
+                // aggiunge/modifica tutte le celle di questa strategia alla coda di priorità
+                add(s, B, Q, set_size);
+                setTerm(s, pattern(s, B));
+                generated++;
+            }
+            /* -------------------------------------------------- */
         }
-        /* -------------------------------------------------- */
 
-        // 2)
-        /* -------------------------------------------------- */
-        if (B.cellState(c.i, c.j) == adv) {
-            generated_stack.push(0); // Se c appartiene all'avversario, allora
-            // sicuramente le generate saranno 0
-        } else {
-            int generated = generaOrizzontali(c,B,Q) + generaVerticali(c,B,Q) + generaDiagonali(c,B,Q);
-            generated_stack.push(generated);
+        // Una cella dell'avversario chiude le MNKStrategy di cui è un estremo
+        n = mine ? 0 : W.endWindows(ci, windows_buf, 0);
+        for (int k = 0; k < n; k++) {
+            int s = slot(windows_buf[k]);
+            if (s != -1 && pos[s] != -1)
+                setTerm(s, pattern(s, B));
         }
-        /* -------------------------------------------------- */
+        generated_stack[turn++] = generated;
 
         // Test di correttezza
         if (win_count < 0)
             throw new IllegalStateException("Negative win count");
-        if (win_count > set.size())
+        if (win_count > set_size)
             throw new IllegalStateException("More winning strategies (" + win_count +
-                    ") than factual strategies (" + set.size());
+                    ") than factual strategies (" + set_size);
     }
 
     /**
      * Funzione "compagno" di unmarkCell() e speculare ad update().
      * E' strutturata nel modo seguente:
      *
-     * 1) rimuovi dal set un numero di MNKStrategy pari a quello restituito
-     * da generated_stack.pop(). Infatti, queste coincideranno esattamente
+     * 1) rimuovi dal set un numero di MNKStrategy pari a quello memorizzato
+     * in cima a generated_stack. Infatti, queste coincideranno esattamente
      * con le MNKStrategy generate dalla mossa che stiamo annullando;
      *
-     * 2) aggiungi nel set le MNKStrategy restituite da invalid_stack.pop().
+     * 2) aggiungi nel set le MNKStrategy accodate su invalid_trail durante
+     * il turno, in ordine inverso rispetto a quello di rimozione.
      * Questo equivale al ripristinare tutte le MNKStrategy invalidate
      * dalla mossa che stiamo annullando;
      *
      * 3) per ogni MNKStrategy S (preesistente a c) tale che S contiene c, rimuove
      * c da S;
      *
-     * Complessita': O(n), dove n è la dimensione del set
+     * Complessita': O(K^2), indipendentemente dalla dimensione del set
      * 
      * @param c cella smarcata nell'algoritmo
-     * @param B MNKBoard di gioco
+     * @param B MNKBitBoard di gioco
      */
-    public void undo(MNKCell c, MNKBoard B, MovesQueue Q) {
+    public void undo(MNKCell c, MNKBitBoard B, MovesQueue Q) {
         if (B.cellState(c.i, c.j) == MNKCellState.FREE) {
             throw new IllegalArgumentException("Input cell is FREE: cell should be marked!");
         }
@@ -266,36 +606,47 @@ public class StrategySet {
 
         // 1)
         /* -------------------------------------------------- */
-        int MAX = generated_stack.pop(), n = set.size() - 1;
-        for (int i = n; i > n - MAX; i--) {
-            remove(set.get(i), B, Q);
-            set.remove(i);
+        turn--;
+        while (term_top > term_stack[turn]) {
+            int s = term_trail_id[--term_top];
+            score  -= term[s] - term_trail_value[term_top];
+            term[s] = term_trail_value[term_top];
         }
+
+        int MAX = generated_stack[turn], n = set_size - 1;
+        for (int i = n; i > n - MAX; i--)
+            remove(i, B, Q);
         /* -------------------------------------------------- */
 
         // 2)
         /* -------------------------------------------------- */
-        ArrayList<InvMNKStrategy> invalids = invalid_stack.pop();
-        for (InvMNKStrategy S : invalids)
-            add(S.S, B, Q, S.index);
+        while (trail_size > invalid_stack[turn]) {
+            int t = invalid_trail[--trail_size], s = invalid_trail[--trail_size];
+            add(s, B, Q, t);
+        }
         /* -------------------------------------------------- */
 
         // 3)
         /* -------------------------------------------------- */
-        for (MNKStrategy S : set) {
-            if (S.contains(c)) {
-                boolean winning = S.winning();
-                S.remove(c, B);
-
-                if (!S.valid()) {
-                    throw new IllegalStateException("Invalid strategy " + S + " left in the set\n" +
+        boolean mine = B.cellState(c.i, c.j) == player;
+        int w = W.windows(cellIndex(c, B), windows_buf, windows_at, 0);
+        for (int k = 0; k < w; k++) {
+            int s = slot(windows_buf[k]);
+            if (s != -1 && pos[s] != -1) {
+                if (mine) {
+                    threatRemove(s);
+                    if (my_cells[s]-- == K - 1)
+                        win_count--;
+                    threatAdd(s);
+                    if (by_mask)
+                        mask[s] &= ~(1 << windows_at[k]);
+                } else
+                    adv_cells[s]--;
+
+                if (adv_cells[s] != 0 || my_cells[s] <= 0) {
+                    throw new IllegalStateException("Invalid strategy " + toString(s) + " left in the set\n" +
                             "Currently removing cell [" + c.i + "," + c.j + "]");
                 }
-
-                if (winning && !S.winning())
-                    win_count--;
-                else if (!winning && S.winning())
-                    win_count++;
             }
         }
         /* -------------------------------------------------- */
@@ -303,9 +654,9 @@ public class StrategySet {
         // Test di correttezza
         if (win_count < 0)
             throw new IllegalStateException("Negative win count");
-        if (win_count > set.size())
+        if (win_count > set_size)
             throw new IllegalStateException("More winning strategies (" + win_count +
-                    ") than factual strategies (" + set.size() + ")");
+                    ") than factual strategies (" + set_size + ")");
     }
 
     /**
@@ -314,164 +665,142 @@ public class StrategySet {
      * @return dimensione n del set
      */
     public int size() {
-        return set.size();
+        return set_size;
     }
 
     /**
      * Complessita': O(1)
      * 
-     * @return MNKStrategy vincenti
+     * @return dimensione massima raggiunta dal set dall'ultima resetMaxSize()
      */
-    public int winning() {
-        return win_count;
+    public int maxSize() {
+        return max_size;
     }
 
     /**
-     * Complessita': O(n), dove n è la dimensione del set
-     * 
-     * @param B MNKBoard di gioco attuale
-     * @return la cella c che, se marcata, porta alla vittoria
-     *         il giocatore a cui appartiene il set
+     * Riporta la dimensione massima a quella attuale del set.
+     * Complessita': O(1)
      */
-    public MNKCell winningCell(MNKBoard B) {
-        for (MNKStrategy S : set)
-            if (S.valid() && S.winning())
-                return S.getWinCell(B);
-        throw new IllegalStateException("Should have found a single-move win.");
+    public void resetMaxSize() {
+        max_size = set_size;
     }
 
     /**
-     * Genera orizzontalmente a partire dalla cella c.
-     * Complessita': O(K)
-     * @param c cella marcata
-     * @param B configurazione attuale di gioco
-     * @param Q priority queue delle mosse
-     * @return numero di MNKStrategy generate
-     */
-    public int generaOrizzontali(MNKCell c, MNKBoard B, MovesQueue Q) {
-        int generated=0;
-        for (int x = c.j - (B.K - 1); x <= c.j; x++) {
-            if (x >= 0 && x < B.N && x + B.K - 1 < B.N) {
-                MNKStrategy strategia = new MNKStrategy(B, c);
-
-                for (int y = x; y < B.K + x && y < B.N && strategia.valid(); y++) {
-                    MNKCell cella = new MNKCell(c.i, y, B.cellState(c.i, y));
-                    strategia.setRange(cella);
-                    if (B.cellState(c.i, y) != MNKCellState.FREE) {
-                        strategia.add(cella, B);
-                    }
-                }
+     * Complessita': O(1)
+     * 
+     * @return valutazione a pattern delle MNKStrategy del set
+     */
+    public long score() {
+        return score;
+    }
 
-                if (strategia.valid() && !set.contains(strategia)) {
-                    // aggiunge/modifica tutte le celle di questa strategia alla coda di priorità
-                    add(strategia, B, Q, set.size());
-                    generated++;
-                }
-            }
-        } return generated;
+    /**
+     * Complessita': O(1)
+     * 
+     * @return MNKStrategy vincenti
+     */
+    public int winning() {
+        return win_count;
     }
 
     /**
-     * Genera verticalmente a partire dalla cella c.
      * Complessita': O(K)
-     * @param c cella marcata
-     * @param B configurazione attuale di gioco
-     * @param Q priority queue delle mosse
-     * @return numero di MNKStrategy generate
-     */
-    public int generaVerticali(MNKCell c, MNKBoard B, MovesQueue Q) {
-        int generated=0;
-        for (int x = c.i - (B.K - 1); x <= c.i; x++) {
-            if (x >= 0 && x < B.M && x + B.K - 1 < B.M) {
-                MNKStrategy strategia = new MNKStrategy(B, c);
-                for (int y = x; y < B.K + x && strategia.valid(); y++) {
-                    MNKCell cella = new MNKCell(y, c.j, B.cellState(y, c.j));
-                    strategia.setRange(cella);
-                    if (B.cellState(y, c.j) != MNKCellState.FREE) {
-                        strategia.add(cella, B);
-                    }
-                }
-
-                if (strategia.valid() && !set.contains(strategia)) {
-                    // aggiunge/modifica tutte le celle di questa strategia alla coda di priorità
-                    add(strategia, B, Q, set.size());
-                    generated++;
-                }
+     * 
+     * @param B MNKBitBoard di gioco attuale
+     * @return la cella c che, se marcata, porta alla vittoria
+     *         il giocatore a cui appartiene il set
+     */
+    public MNKCell winningCell(MNKBitBoard B) {
+        if (threat_size[0] > 0) {
+            int s = threats[0][0];
+            for (int t = 0; t < K; t++) {
+                MNKCell c = B.cell(W.cell(window[s], t));
+                if (B.cellState(c.i, c.j) == MNKCellState.FREE)
+                    return c;
             }
-        } return generated;
+        }
+        throw new IllegalStateException("Should have found a single-move win.");
     }
 
     /**
-     * Genera diagonalmente a partire dalla cella c.
-     * Complessita': O(K)
-     * @param c cella marcata
-     * @param B configurazione attuale di gioco
-     * @param Q priority queue delle mosse
-     * @return numero di MNKStrategy generate
-     */
-    public int generaDiagonali(MNKCell c, MNKBoard B, MovesQueue Q) {
-        int generated=0;
-        for (int x = c.j - (B.K - 1), y = c.i - (B.K - 1); x <= c.j && y <= c.i; x++, y++) {
-            if ((x >= 0 && x < B.N && x + B.K - 1 < B.N) && (y >= 0 && y < B.M && y + B.K - 1 < B.M)) {
-                // System.out.println("Sto analizzando la casella [" + x + "," + y + "]");
-                MNKStrategy strategia = new MNKStrategy(B, c);
-                for (int a = x, b = y; a < B.K + x && b < B.K + y && strategia.valid(); a++, b++) {
-                    MNKCell cella = new MNKCell(b, a, B.cellState(b, a));
-                    strategia.setRange(cella);
-                    if (B.cellState(b, a) != MNKCellState.FREE) {
-                        strategia.add(cella, B);
-                    }
-                }
-
-                if (strategia.valid() && !set.contains(strategia)) {
-                    // aggiunge/modifica tutte le celle di questa strategia alla coda di priorità
-                    add(strategia, B, Q, set.size());
-                    generated++;
-
-                }
+     * Copia in buf, a partire da from, i cellIndex delle celle libere delle
+     * MNKStrategy del set che contengono esattamente size simboli. Una cella
+     * compare una volta per ogni MNKStrategy che la contiene.
+     * Con size = K-1 si ottengono le celle vincenti, con size = K-2 le celle
+     * che creano una nuova MNKStrategy vincente: per queste due dimensioni
+     * le MNKStrategy si leggono dalle liste di minaccia, per le altre si
+     * scandisce il set.
+     * Complessita': O(m*K) per size = K-1 o K-2, dove m è il numero di
+     * MNKStrategy con size simboli; O(n + m*K) altrimenti, dove n è la
+     * dimensione del set
+     * @param buf array di destinazione, con almeno size()*K posizioni libere da from
+     * @return numero di celle copiate
+     */
+    public int freeCells(int size, int[] buf, int from, MNKBitBoard B) {
+        int n = from, l = threatList(size);
+        int[] list = l == -1 ? set : threats[l];
+        int count  = l == -1 ? set_size : threat_size[l];
+        for (int k = 0; k < count; k++) {
+            int s = list[k];
+            if (my_cells[s] != size)
+                continue;
+            for (int t = 0; t < K; t++) {
+                int x = W.cell(window[s], t);
+                MNKCell c = B.cell(x);
+                if (B.cellState(c.i, c.j) == MNKCellState.FREE)
+                    buf[n++] = x;
             }
         }
+        return n - from;
+    }
 
-        for (int col = c.j + (B.K - 1), row = c.i - (B.K - 1); col >= c.j && row <= c.i; col--, row++) {
-            if ((col >= 0 && col < B.N && col - (B.K - 1) >= 0) && (row >= 0 && row < B.M && row + B.K - 1 < B.M)) {
-                // System.out.println("Sto analizzando la casella [" + col + "," + row + "]");
-                MNKStrategy strategia = new MNKStrategy(B, c);
-                for (int x = row, y = col; y >= col - (B.K - 1) && x < row + B.K && strategia.valid(); x++, y--) {
-                    MNKCell cella = new MNKCell(x, y, B.cellState(x, y));
-                    strategia.setRange(cella);
-                    if (B.cellState(x, y) != MNKCellState.FREE) {
-                        strategia.add(cella, B);
-                    }
-                }
-
-                if (strategia.valid() && !set.contains(strategia)) {
-                    // aggiunge/modifica tutte le celle di questa strategia alla coda di priorità
-                    add(strategia, B, Q, set.size());
-                    generated++;
-
-                }
+    /**
+     * Copia in buf, a partire da from, a coppie, le due celle libere di ogni
+     * MNKStrategy del set con K-2 simboli: marcando una delle due, l'altra
+     * diventa la cella vincente della MNKStrategy.
+     * Complessita': O(m*K), dove m è il numero di MNKStrategy con K-2 simboli
+     * @param buf array di destinazione, con almeno 2*threats(K-2) posizioni libere da from
+     * @return numero di celle copiate, il doppio delle coppie
+     */
+    public int threatPairs(int[] buf, int from, MNKBitBoard B) {
+        int n = from;
+        for (int k = 0; k < threat_size[1]; k++) {
+            int s = threats[1][k];
+            for (int t = 0; t < K; t++) {
+                int x = W.cell(window[s], t);
+                MNKCell c = B.cell(x);
+                if (B.cellState(c.i, c.j) == MNKCellState.FREE)
+                    buf[n++] = x;
             }
-        } return generated;
+        }
+        return n - from;
     }
 
     /**
-     *  Complessita': O(n), dove n è la dimensione del set
-     *  @return lista delle MNKStrategy passanti per c
+     * Complessita': O(1)
+     * 
+     * @param size K-1 o K-2
+     * @return numero di MNKStrategy del set con size simboli
      */
-    public ArrayList<MNKStrategy> getStrategie(MNKCell c) {
-        ArrayList<MNKStrategy> strategie = new ArrayList<>();
+    public int threats(int size) {
+        int l = threatList(size);
+        if (l == -1)
+            throw new IllegalArgumentException("Threat lists hold K-1 and K-2 symbols, not " + size);
+        return threat_size[l];
+    }
 
-        for (MNKStrategy S : set)
-            if (S.contains(c)) strategie.add(S);
-        return strategie;
+    private String toString(int s) {
+        int a = W.cell(window[s], 0), b = W.cell(window[s], K - 1);
+        return "MNKStrategy from [" + a / W.N + "," + a % W.N + "] to [" +
+            b / W.N + "," + b % W.N + "] - player=" + player;
     }
 
 
     // Debug
     public void print() {
         System.out.println(player + ": ");
-        for (MNKStrategy S : set)
-            System.out.println(S);
+        for (int k = 0; k < set_size; k++)
+            System.out.println(toString(set[k]));
         System.out.print('\n');
     }
 }
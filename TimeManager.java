@@ -0,0 +1,115 @@
+package mnkgame;
+
+/**
+ *  Gestione del tempo di una mossa, basata su scadenze assolute misurate con
+ *  System.nanoTime() (monotono, a differenza di currentTimeMillis()).
+ *  Nessun thread viene creato: è la ricerca a interrogare hardExpired()
+ *  ogni CHECK_INTERVAL nodi.
+ *
+ *  Le scadenze sono due:
+ *
+ *  - soft: superata questa, iterativeDeepening non inizia nuove iterazioni.
+ *    Dipende dalla complessità della posizione, così le posizioni forzate
+ *    consumano poco tempo e quelle aperte ne ricevono di più;
+ *
+ *  - hard: entro questa selectCell deve aver restituito la mossa. La
+ *    ricerca in corso viene interrotta poco prima (hardExpired()), così
+ *    resta il tempo per risalire dalla ricerca e giocare la mossa.
+ */
+public final class TimeManager {
+    /**
+     *  Numero di nodi tra due controlli dell'orologio (potenza di 2).
+     *  Sulle scacchiere grandi un nodo costa decine di microsecondi: con
+     *  64 nodi la ricerca si accorge della scadenza hard entro circa un
+     *  millisecondo, mentre nanoTime() resta trascurabile sul costo dei nodi.
+     */
+    public static final int CHECK_INTERVAL = 64;
+    public static final int CHECK_MASK     = CHECK_INTERVAL - 1;
+
+    /**
+     *  Frazione del timeout che fissa la scadenza hard: il resto è il
+     *  margine del framework per ricevere la mossa.
+     */
+    public static final double HARD_FRACTION = 0.95;
+
+    /**
+     *  Frazione della scadenza hard dopo la quale la ricerca viene
+     *  interrotta: l'ultimo 1% (circa 50 ms con timeout di 5 s) copre un
+     *  intervallo tra due controlli dell'orologio, la risalita dalla
+     *  ricorsione e la marcatura della mossa.
+     */
+    private static final double STOP_FRACTION = 0.99;
+
+    /**
+     *  Frazione della scadenza hard assegnata alla scadenza soft nelle
+     *  posizioni di complessità 0 e 1.
+     */
+    private static final double MIN_SOFT = 0.15, MAX_SOFT = 0.6;
+
+    private final long budget;
+    private volatile long start, soft, stop;
+
+    /**
+     *  @param timeout_in_secs tempo a disposizione per ogni mossa, in secondi
+     */
+    public TimeManager(int timeout_in_secs) {
+        if (timeout_in_secs <= 0)
+            throw new IllegalArgumentException("Invalid timeout: " + timeout_in_secs + " s");
+        budget = (long) (timeout_in_secs * 1e9 * HARD_FRACTION);
+    }
+
+    /**
+     *  Da chiamare all'inizio di ogni selectCell. Fino alla chiamata di
+     *  allocate(), la scadenza soft coincide con l'interruzione della ricerca.
+     *  Complessità: O(1)
+     */
+    public void start() {
+        start = System.nanoTime();
+        stop  = start + (long) (budget * STOP_FRACTION);
+        soft  = stop;
+    }
+
+    /**
+     *  Fissa la scadenza soft in base alla complessità della posizione.
+     *  Complessità: O(1)
+     *  @param complexity stima in [0, 1]: 0 per una posizione forzata,
+     *      1 per una posizione con molte alternative
+     */
+    public void allocate(double complexity) {
+        complexity = Math.max(0, Math.min(1, complexity));
+        soft = start + (long) (budget * (MIN_SOFT + (MAX_SOFT - MIN_SOFT) * complexity));
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return True se non conviene iniziare una nuova iterazione
+     */
+    public boolean softExpired() {
+        return System.nanoTime() - soft >= 0;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return True se la ricerca va interrotta, per restituire la mossa
+     *      entro la scadenza hard
+     */
+    public boolean hardExpired() {
+        return System.nanoTime() - stop >= 0;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return nanosecondi trascorsi da start()
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return millisecondi trascorsi da start()
+     */
+    public long elapsedMillis() {
+        return elapsedNanos() / 1_000_000;
+    }
+}
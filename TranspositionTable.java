@@ -0,0 +1,153 @@
+package mnkgame;
+
+import java.util.Arrays;
+
+/**
+ *  Tabella delle trasposizioni a dimensione fissa, indirizzata dall'hash
+ *  Zobrist della configurazione. Le entry sono memorizzate in un unico
+ *  long[] (nessuna allocazione in probe e store) e raggruppate in bucket
+ *  di due slot:
+ *
+ *  - slot 0, "depth-preferred": viene sovrascritto solo da una ricerca
+ *    almeno altrettanto profonda o se l'entry appartiene a una generazione
+ *    precedente;
+ *
+ *  - slot 1, "always-replace": riceve tutto ciò che lo slot 0 rifiuta.
+ *
+ *  La generazione viene incrementata a ogni mossa (newSearch()), così le
+ *  entry delle ricerche passate sono le prime a essere rimpiazzate.
+ *
+ *  La tabella è condivisa senza lock tra i thread della ricerca Lazy SMP:
+ *  ogni slot è la coppia (key ^ data, data), dove data impacchetta tutta
+ *  l'entry in un solo long. Se due thread scrivono lo stesso slot nello
+ *  stesso momento, la coppia letta non supera il controllo sulla chiave
+ *  e la probe la tratta come assente.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0, LOWERBOUND = 1, UPPERBOUND = 2;
+
+    /**
+     *  Dimensione di default della tabella, in MB.
+     */
+    public static final int DEFAULT_MB = 64;
+
+    /**
+     *  Ogni slot occupa due long consecutivi: chiave (in XOR con data) e data.
+     *  Formato di data:
+     *  bit 0-1 flag, bit 2 validità, bit 3-10 generazione,
+     *  bit 16-31 profondità, bit 32-63 valutazione (float).
+     */
+    private static final int STRIDE = 2, SLOTS = 2;
+
+    private static final long VALID = 1L << 2;
+
+    private final long[] table;
+    private final int mask;
+    private volatile int generation;
+
+    /**
+     *  Complessità: O(n), dove n è il numero di slot
+     *  @param mb memoria da dedicare alla tabella, in MB
+     */
+    public TranspositionTable(int mb) {
+        if (mb <= 0)
+            throw new IllegalArgumentException("Invalid transposition table size: " + mb + " MB");
+
+        long buckets = Long.highestOneBit(Math.max(1, (long) mb * 1024 * 1024 / (8 * STRIDE * SLOTS)));
+        buckets      = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / (STRIDE * SLOTS)));
+        table        = new long[(int) buckets * STRIDE * SLOTS];
+        mask         = (int) buckets - 1;
+        generation   = 0;
+    }
+
+    /**
+     *  Da chiamare all'inizio di ogni selectCell: le entry scritte
+     *  nelle mosse precedenti diventano rimpiazzabili.
+     *  Complessità: O(1)
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     *  Svuota la tabella.
+     *  Complessità: O(n), dove n è il numero di slot
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    private int bucket(long key) {
+        return ((int) key & mask) * STRIDE * SLOTS;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param key hash della configurazione
+     *  @return entry associata a key (da leggere con eval(), depth() e
+     *      flag()), oppure 0 se assente
+     */
+    public long probe(long key) {
+        int b = bucket(key);
+        for (int s = b; s < b + STRIDE * SLOTS; s += STRIDE) {
+            long data = table[s + 1];
+            if ((table[s] ^ data) == key && (data & VALID) != 0)
+                return data;
+        }
+        return 0;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param key   hash della configurazione
+     *  @param eval  valutazione
+     *  @param depth profondità a cui è stata calcolata eval
+     *  @param flag  EXACT, LOWERBOUND o UPPERBOUND
+     *  @return True se lo store ha sostituito l'entry valida di un'altra
+     *      configurazione
+     */
+    public boolean store(long key, double eval, int depth, int flag) {
+        int s = bucket(key);
+        long old = table[s + 1];
+
+        if ((old & VALID) != 0 && generation(old) == generation && depth < depth(old)) {
+            s += STRIDE; // Lo slot depth-preferred resta com'è: si usa quello always-replace
+            old = table[s + 1];
+        }
+        boolean overwrite = (old & VALID) != 0 && (table[s] ^ old) != key;
+
+        long data = (long) Float.floatToRawIntBits((float) eval) << 32
+                | (long) Math.min(depth, 0xFFFF) << 16 | (long) generation << 3 | VALID | flag;
+        table[s + 1] = data;
+        table[s]     = key ^ data;
+        return overwrite;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 3) & 0xFF;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param data entry restituita da probe()
+     */
+    public static double eval(long data) {
+        return Float.intBitsToFloat((int) (data >>> 32));
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param data entry restituita da probe()
+     */
+    public static int depth(long data) {
+        return (int) (data >>> 16) & 0xFFFF;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param data entry restituita da probe()
+     */
+    public static int flag(long data) {
+        return (int) data & 3;
+    }
+}
@@ -0,0 +1,183 @@
+package mnkgame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  Tabella delle finestre della scacchiera per una configurazione (M,N,K).
+ *  Una finestra è una fila di K celle consecutive in una delle quattro
+ *  direzioni (orizzontale, verticale, diagonale e anti-diagonale), cioè
+ *  una potenziale MNKStrategy: la finestra che parte dalla cella x in
+ *  direzione d ha identificativo 4*x + d, stabile e in [0, 4*M*N).
+ *
+ *  La tabella non memorizza nulla per cella o per finestra: celle, estremi
+ *  e finestre passanti per una cella (al più 4*K) si calcolano con
+ *  l'aritmetica degli indici, così la memoria non dipende dall'area della
+ *  scacchiera. Le finestre di una cella vengono copiate dal chiamante in un
+ *  proprio buffer con windows(), quelle di cui la cella è un estremo (la
+ *  cella subito prima o subito dopo la finestra lungo la sua direzione)
+ *  con endWindows().
+ */
+public final class WindowTable {
+    public final int M, N, K;
+
+    /**
+     *  Direzioni come (di, dj) e incremento di cellIndex tra due celle
+     *  consecutive della finestra: step[d] = DI[d] * N + DJ[d].
+     */
+    private static final int[] DI = { 0, 1, 1, 1 }, DJ = { 1, 0, 1, -1 };
+    private final int[] step;
+
+    private final int size;
+
+    /**
+     *  Tabelle costruite, per (M,N,K): le ultime CACHE_SIZE usate, così
+     *  MNKArena e i giocatori che alternano configurazioni diverse non le
+     *  ricostruiscono a ogni partita.
+     */
+    private static final int CACHE_SIZE = 4;
+    private static final Map<Long, WindowTable> cache = new LinkedHashMap<Long, WindowTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WindowTable> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     *  Complessità: O(1)
+     *  @return tabella delle finestre per la configurazione (M,N,K)
+     */
+    public static synchronized WindowTable get(int M, int N, int K) {
+        return cache.computeIfAbsent((long) M << 42 | (long) N << 21 | K, key -> new WindowTable(M, N, K));
+    }
+
+    private WindowTable(int M, int N, int K) {
+        this.M = M;
+        this.N = N;
+        this.K = K;
+        step   = new int[4];
+
+        int n = 0;
+        for (int d = 0; d < 4; d++) {
+            step[d] = DI[d] * N + DJ[d];
+            n += count(M, DI[d]) * count(N, Math.abs(DJ[d]));
+        }
+        size = n;
+    }
+
+    /**
+     *  @return numero di posizioni di partenza, lungo un lato di lunghezza
+     *      L, per una finestra che avanza di d (0 o 1) celle a ogni passo
+     */
+    private int count(int L, int d) {
+        return d == 0 ? L : Math.max(0, L - (K - 1));
+    }
+
+    private boolean inside(int i, int j) {
+        return i >= 0 && i < M && j >= 0 && j < N;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return numero di finestre della scacchiera
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param id identificativo della finestra
+     *  @return direzione della finestra, in [0, 4)
+     */
+    public static int direction(int id) {
+        return id & 3;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param id identificativo della finestra
+     *  @param k  posizione nella finestra, in [0, K)
+     *  @return cellIndex della k-esima cella della finestra
+     */
+    public int cell(int id, int k) {
+        return (id >> 2) + k * step[id & 3];
+    }
+
+    /**
+     *  Copia in buf, a partire da from, gli identificativi delle finestre
+     *  passanti per la cella c, per direzione e poi per cella iniziale.
+     *  Complessità: O(K)
+     *  @param buf array di destinazione, con almeno 4*K posizioni libere da from
+     *  @return numero di finestre copiate
+     */
+    public int windows(int c, int[] buf, int from) {
+        return windows(c, buf, null, from);
+    }
+
+    /**
+     *  Come windows(c, buf, from), copiando inoltre in at (se non null),
+     *  nelle stesse posizioni, la posizione di c in ogni finestra, in [0, K).
+     *  Complessità: O(K)
+     */
+    public int windows(int c, int[] buf, int[] at, int from) {
+        int i = c / N, j = c % N, n = from;
+        for (int d = 0; d < 4; d++) {
+            // t è la posizione di c nella finestra: la finestra parte da
+            // (i - t*di, j - t*dj) e finisce in (i + (K-1-t)*di, j + (K-1-t)*dj)
+            int lo = Math.max(0, Math.max(low(i, M, DI[d]), low(j, N, DJ[d])));
+            int hi = Math.min(K - 1, Math.min(high(i, M, DI[d]), high(j, N, DJ[d])));
+            for (int t = hi; t >= lo; t--) {
+                if (at != null)
+                    at[n] = t;
+                buf[n++] = 4 * (c - t * step[d]) + d;
+            }
+        }
+        return n - from;
+    }
+
+    /**
+     *  @return minima posizione t di una coordinata p (lato L, incremento
+     *      delta) dentro una finestra che resta sulla scacchiera
+     */
+    private int low(int p, int L, int delta) {
+        return delta == 0 ? 0 : delta > 0 ? p + K - L : K - 1 - p;
+    }
+
+    /**
+     *  @return massima posizione t, come per low()
+     */
+    private int high(int p, int L, int delta) {
+        return delta == 0 ? K - 1 : delta > 0 ? p : L - 1 - p;
+    }
+
+    /**
+     *  Copia in buf, a partire da from, gli identificativi delle finestre
+     *  di cui la cella c è un estremo.
+     *  Complessità: O(1)
+     *  @param buf array di destinazione, con almeno 8 posizioni libere da from
+     *  @return numero di finestre copiate
+     */
+    public int endWindows(int c, int[] buf, int from) {
+        int i = c / N, j = c % N, n = from;
+        for (int d = 0; d < 4; d++) {
+            // Finestra che segue c e finestra che la precede
+            if (inside(i + DI[d], j + DJ[d]) && inside(i + K * DI[d], j + K * DJ[d]))
+                buf[n++] = 4 * (c + step[d]) + d;
+            if (inside(i - K * DI[d], j - K * DJ[d]))
+                buf[n++] = 4 * (c - K * step[d]) + d;
+        }
+        return n - from;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @param id   identificativo della finestra
+     *  @param side 0 per la cella che precede la finestra, 1 per quella che la segue
+     *  @return cellIndex dell'estremo, oppure -1 se fuori dalla scacchiera
+     */
+    public int end(int id, int side) {
+        int x = id >> 2, d = id & 3, t = side == 0 ? -1 : K;
+        return inside(x / N + t * DI[d], x % N + t * DJ[d]) ? x + t * step[d] : -1;
+    }
+}
@@ -0,0 +1,147 @@
+package mnkgame;
+
+/**
+ *  Hash Zobrist della configurazione, mantenuto incrementalmente sotto
+ *  tutte le simmetrie della scacchiera: 8 (rotazioni e riflessioni) se
+ *  la scacchiera è quadrata, 4 (identità, riflessioni orizzontale e
+ *  verticale, rotazione di 180°) altrimenti.
+ *
+ *  hash(s) è l'hash della configurazione trasformata dalla simmetria s
+ *  (la simmetria 0 è l'identità). Il minimo tra gli hash, canonical(), è
+ *  lo stesso per tutte le configurazioni equivalenti per simmetria e le
+ *  identifica in tabella delle trasposizioni e nel libro delle aperture.
+ *  Una mossa x della configurazione corrisponde alla mossa
+ *  toCanonical(s, x) della configurazione canonica, con s = canonicalSymmetry().
+ *
+ *  Le chiavi dipendono solo da (M,N,K), così gli hash sono gli stessi tra
+ *  una partita e l'altra. Non sono memorizzate: la chiave della cella x
+ *  per un giocatore è un mix (SplitMix64) di seed e della coppia
+ *  (x, giocatore), e le simmetrie si calcolano sulle coordinate, così la
+ *  memoria non dipende dall'area della scacchiera.
+ */
+public final class ZobristHash {
+    private final int M, N;
+
+    private final long seed;
+
+    private final long[] hash;
+
+    /**
+     *  Complessità: O(1)
+     */
+    public ZobristHash(int M, int N, int K) {
+        this.M = M;
+        this.N = N;
+        seed   = 0x5A0B_2022L ^ ((long) M << 40 | (long) N << 20 | K);
+        hash   = new long[M == N ? 8 : 4];
+    }
+
+    /**
+     *  Nuovo hash, relativo alla scacchiera vuota, con le stesse chiavi e
+     *  simmetrie di other.
+     *  Complessità: O(1)
+     */
+    public ZobristHash(ZobristHash other) {
+        M    = other.M;
+        N    = other.N;
+        seed = other.seed;
+        hash = new long[other.hash.length];
+    }
+
+    /**
+     *  Finalizzatore di SplitMix64: due valori vicini danno chiavi
+     *  indipendenti.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return cellIndex in cui la simmetria s porta la cella [i,j]
+     */
+    private int symmetry(int s, int i, int j) {
+        switch (s) {
+            case 0:  return i * N + j;
+            case 1:  return i * N + (N - 1 - j);
+            case 2:  return (M - 1 - i) * N + j;
+            case 3:  return (M - 1 - i) * N + (N - 1 - j);
+            case 4:  return j * N + i;
+            case 5:  return j * N + (N - 1 - i);
+            case 6:  return (N - 1 - j) * N + i;
+            default: return (N - 1 - j) * N + (N - 1 - i);
+        }
+    }
+
+    /**
+     *  Aggiunge o toglie (l'operazione è la stessa) il simbolo di player
+     *  nella cella x.
+     *  Complessità: O(S), dove S è il numero di simmetrie
+     *  @param x      cellIndex
+     *  @param player 0 per P1, 1 per P2
+     */
+    public void toggle(int x, int player) {
+        int i = x / N, j = x % N;
+        for (int s = 0; s < hash.length; s++)
+            hash[s] ^= key(symmetry(s, i, j), player);
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return hash della configurazione, senza simmetrie
+     */
+    public long hash() {
+        return hash[0];
+    }
+
+    /**
+     *  Complessità: O(S)
+     *  @return hash della configurazione canonica
+     */
+    public long canonical() {
+        long h = hash[0];
+        for (int s = 1; s < hash.length; s++)
+            h = Math.min(h, hash[s]);
+        return h;
+    }
+
+    /**
+     *  Complessità: O(S)
+     *  @return simmetria che porta la configurazione in quella canonica
+     */
+    public int canonicalSymmetry() {
+        int best = 0;
+        for (int s = 1; s < hash.length; s++)
+            if (hash[s] < hash[best])
+                best = s;
+        return best;
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return cellIndex della cella x dopo la simmetria s
+     */
+    public int toCanonical(int s, int x) {
+        return symmetry(s, x / N, x % N);
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return cellIndex della cella che la simmetria s porta in y
+     */
+    public int fromCanonical(int s, int y) {
+        // Le simmetrie sono involuzioni, tranne le rotazioni di 90° (5 e 6),
+        // l'una inversa dell'altra
+        return toCanonical(s == 5 ? 6 : s == 6 ? 5 : s, y);
+    }
+
+    /**
+     *  Complessità: O(1)
+     *  @return chiave Zobrist della cella x per player (0 per P1, 1 per P2)
+     */
+    public long key(int x, int player) {
+        return mix(seed + 0x9E3779B97F4A7C15L * (2L * x + player + 1));
+    }
+}
@@ -0,0 +1,91 @@
+package mnkgame;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Aggiornamento incrementale della configurazione, una cella libera
+ *  della posizione alla volta:
+ *
+ *  - bitBoard: MNKBitBoard markCell/unmarkCell;
+ *  - markUnmark: mark/unmark completo (MNKBitBoard, MovesQueue e
+ *    StrategySet dei due giocatori, nello stesso ordine di
+ *    AlphaBetaPro.mark/unmark);
+ *  - movesQueue: MovesQueue moves() e, per ogni mossa, due shiftPriority().
+ */
+public class BoardBenchmark extends PositionBenchmark {
+    private MNKBitBoard B;
+    private MovesQueue Q;
+    private StrategySet P1, P2;
+
+    private int[] free, queue;
+    private int n_free, next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        load();
+        B  = new MNKBitBoard(M, N, K);
+        Q  = new MovesQueue(B, MNKCellState.P1);
+        P1 = new StrategySet(B, MNKCellState.P1);
+        P2 = new StrategySet(B, MNKCellState.P2);
+        for (MNKCell c : MC)
+            mark(B.cell(c.i * N + c.j));
+
+        free   = new int[M * N];
+        queue  = new int[M * N];
+        n_free = B.getFreeCells(free, 0);
+        next   = 0;
+    }
+
+    /**
+     *  @return prossima cella libera della posizione, a rotazione
+     */
+    private MNKCell nextFree() {
+        MNKCell c = B.cell(free[next]);
+        if (++next == n_free)
+            next = 0;
+        return c;
+    }
+
+    @Benchmark
+    public MNKGameState bitBoard() {
+        MNKCell c = nextFree();
+        MNKGameState state = B.markCell(c.i, c.j);
+        B.unmarkCell();
+        return state;
+    }
+
+    @Benchmark
+    public long markUnmark() {
+        MNKCell c = nextFree();
+        mark(c);
+        long score = P1.score() - P2.score();
+        unmark(c);
+        return score;
+    }
+
+    @Benchmark
+    public int movesQueue() {
+        int n = Q.moves(queue, 0);
+        for (int k = 0; k < n; k++) {
+            MNKCell c = B.cell(queue[k]);
+            int p = Q.getPriority(c);
+            Q.shiftPriority(c, B, p < 4 * K ? p + 1 : p - 1);
+            Q.shiftPriority(c, B, p);
+        }
+        return queue[0];
+    }
+
+    private void mark(MNKCell c) {
+        B.markCell(c.i, c.j);
+        Q.remove(c, B);
+        P1.update(c, B, Q);
+        P2.update(c, B, Q);
+    }
+
+    private void unmark(MNKCell c) {
+        Q.undo(B, c);
+        P1.undo(c, B, Q);
+        P2.undo(c, B, Q);
+        B.unmarkCell();
+    }
+}
@@ -0,0 +1,29 @@
+package mnkgame;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Valutazione statica di AlphaBetaPro (AlphaBetaPro.evaluate()) nella
+ *  posizione, con il giocatore di turno come max.
+ */
+public class EvalBenchmark extends PositionBenchmark {
+    private AlphaBetaPro player;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        load();
+        player = new AlphaBetaPro(1, 1);
+        player.initPlayer(M, N, K, MC.length % 2 == 0, 3600);
+        player.enter(MC);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        player.leave(MC);
+    }
+
+    @Benchmark
+    public double eval() {
+        return player.evaluate();
+    }
+}
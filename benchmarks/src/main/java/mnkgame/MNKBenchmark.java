@@ -0,0 +1,30 @@
+package mnkgame;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  Esegue tutti i microbenchmark JMH del motore (le classi *Benchmark del
+ *  package), con il profiler gc di JMH per i byte allocati per
+ *  operazione, eventualmente solo sulle configurazioni indicate.
+ *  Per le altre opzioni di JMH si usa direttamente
+ *  java -jar benchmarks/target/benchmarks.jar.
+ *
+ *  Uso: java -cp benchmarks/target/benchmarks.jar mnkgame.MNKBenchmark [MxNxK ...]
+ */
+public final class MNKBenchmark {
+    private MNKBenchmark() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include("mnkgame\\.\\w+Benchmark\\.")
+                .addProfiler(GCProfiler.class);
+        if (args.length > 0)
+            options = options.param("conf", args);
+        new Runner(options.build()).run();
+    }
+}
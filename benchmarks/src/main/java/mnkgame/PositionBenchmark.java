@@ -0,0 +1,42 @@
+package mnkgame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Base dei benchmark che misurano il motore su una posizione: la posizione
+ *  fissa di BenchmarkPositions per la configurazione conf, con la stessa
+ *  profondità di ricerca di MNKAllocationCheck.
+ *
+ *  Come il vecchio harness, ogni misura esegue 5 iterazioni di
+ *  riscaldamento del JIT e 10 di misura da 200 ms, in un solo fork.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public abstract class PositionBenchmark {
+    @Param({ "3x3x3", "7x7x4", "10x10x5", "50x50x10" })
+    public String conf;
+
+    protected int M, N, K, depth;
+    protected MNKCell[] MC;
+
+    /**
+     *  Legge conf e genera la posizione: da chiamare all'inizio del
+     *  @Setup di ogni sottoclasse.
+     */
+    protected void load() {
+        String[] mnk = conf.split("x");
+        if (mnk.length != 3)
+            throw new IllegalArgumentException("Invalid configuration: " + conf + " (expected MxNxK)");
+        M     = Integer.parseInt(mnk[0]);
+        N     = Integer.parseInt(mnk[1]);
+        K     = Integer.parseInt(mnk[2]);
+        MC    = BenchmarkPositions.position(M, N, K);
+        depth = Math.min(M * N - MC.length, BenchmarkPositions.depth(M, N, K));
+    }
+}
@@ -0,0 +1,67 @@
+package mnkgame;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Ricerca a profondità fissa dalla posizione:
+ *
+ *  - alphaBeta: una parentAlphaBeta (AlphaBetaPro.benchmark());
+ *  - iterativeDeepening: le iterazioni 1, ..., depth con il driver a
+ *    finestra di aspirazione o con MTD(f) (AlphaBetaPro.benchmarkDriver()).
+ *
+ *  Oltre alle ricerche al secondo riporta i nodi al secondo (contatore
+ *  nodes); i nodi per ricerca, a parità di profondità, confrontano i due
+ *  driver. La tabella delle trasposizioni viene svuotata, fuori dalla
+ *  misura, prima di ogni ricerca.
+ */
+public class SearchBenchmark extends PositionBenchmark {
+    /**
+     *  Memoria della tabella delle trasposizioni, in MB.
+     */
+    private static final int TT_MB = 16;
+
+    private AlphaBetaPro player;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Driver {
+        @Param({ "aspiration", "mtdf" })
+        public String driver;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        load();
+        player = new AlphaBetaPro(TT_MB, 1);
+        player.initPlayer(M, N, K, MC.length % 2 == 0, 3600);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        player.clearTable();
+    }
+
+    @Benchmark
+    public long alphaBeta(Nodes counter) {
+        long nodes = player.benchmark(MC, depth);
+        counter.nodes += nodes;
+        return nodes;
+    }
+
+    @Benchmark
+    public long iterativeDeepening(Driver driver, Nodes counter) {
+        long nodes = player.benchmarkDriver(MC, depth, driver.driver.equals("mtdf"));
+        counter.nodes += nodes;
+        return nodes;
+    }
+}
@@ -0,0 +1,100 @@
+package mnkgame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ *  StrategySet.update e StrategySet.undo misurati separatamente, su una
+ *  cella libera della posizione alla volta e per i due giocatori, nello
+ *  stesso ordine di AlphaBetaPro.mark/unmark:
+ *
+ *  - update: la cella è già segnata su MNKBitBoard e tolta da MovesQueue,
+ *    si misurano P1.update e P2.update;
+ *  - undo: la cella è già aggiornata e rimessa in MovesQueue, si misurano
+ *    P1.undo e P2.undo.
+ *
+ *  Il resto di mark/unmark avviene nelle fixture Level.Invocation, fuori
+ *  dalla misura: per questo si misura il tempo medio per chiamata, che
+ *  comprende comunque il costo (costante) delle fixture di JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StrategySetBenchmark extends PositionBenchmark {
+    private MNKBitBoard B;
+    private MovesQueue Q;
+    private StrategySet P1, P2;
+
+    private int[] free;
+    private int n_free, next;
+
+    private boolean measure_undo;
+    private MNKCell c;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkParams params) {
+        load();
+        B  = new MNKBitBoard(M, N, K);
+        Q  = new MovesQueue(B, MNKCellState.P1);
+        P1 = new StrategySet(B, MNKCellState.P1);
+        P2 = new StrategySet(B, MNKCellState.P2);
+        for (MNKCell m : MC) {
+            MNKCell x = B.cell(m.i * N + m.j);
+            B.markCell(x.i, x.j);
+            Q.remove(x, B);
+            P1.update(x, B, Q);
+            P2.update(x, B, Q);
+        }
+
+        free         = new int[M * N];
+        n_free       = B.getFreeCells(free, 0);
+        next         = 0;
+        measure_undo = params.getBenchmark().endsWith(".undo");
+    }
+
+    /**
+     *  Segna la prossima cella libera della posizione, a rotazione, fino
+     *  al punto in cui inizia la misura.
+     */
+    @Setup(Level.Invocation)
+    public void prepare() {
+        c = B.cell(free[next]);
+        if (++next == n_free)
+            next = 0;
+        B.markCell(c.i, c.j);
+        Q.remove(c, B);
+        if (measure_undo) {
+            P1.update(c, B, Q);
+            P2.update(c, B, Q);
+            Q.undo(B, c);
+        }
+    }
+
+    /**
+     *  Riporta la posizione com'era prima di prepare().
+     */
+    @TearDown(Level.Invocation)
+    public void restore() {
+        if (!measure_undo) {
+            Q.undo(B, c);
+            P1.undo(c, B, Q);
+            P2.undo(c, B, Q);
+        }
+        B.unmarkCell();
+    }
+
+    @Benchmark
+    public long update() {
+        P1.update(c, B, Q);
+        P2.update(c, B, Q);
+        return P1.score() - P2.score();
+    }
+
+    @Benchmark
+    public long undo() {
+        P1.undo(c, B, Q);
+        P2.undo(c, B, Q);
+        return P1.score() - P2.score();
+    }
+}
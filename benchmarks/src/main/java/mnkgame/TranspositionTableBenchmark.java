@@ -0,0 +1,58 @@
+package mnkgame;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Accessi alla TranspositionTable con chiavi casuali (ma riproducibili):
+ *  probe su una tabella in cui è presente metà delle chiavi, e store.
+ *  Le chiavi cadono in bucket sparsi su tutta la tabella, molto più
+ *  grande delle cache, così la misura comprende i miss di cache come
+ *  durante la ricerca.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class TranspositionTableBenchmark {
+    private static final int KEYS = 1 << 20;
+
+    @Param({ "16", "64" })
+    public int mb;
+
+    private TranspositionTable table;
+    private long[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        table = new TranspositionTable(mb);
+        keys  = new long[KEYS];
+        Random rand = new Random(BenchmarkPositions.SEED);
+        for (int k = 0; k < KEYS; k++) {
+            keys[k] = rand.nextLong();
+            if (k % 2 == 0)
+                table.store(keys[k], 0.5, k % 16, TranspositionTable.EXACT);
+        }
+        next = 0;
+    }
+
+    private long nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public long probe() {
+        return table.probe(nextKey());
+    }
+
+    @Benchmark
+    public boolean store() {
+        long key = nextKey();
+        return table.store(key, 0.25, (int) key & 15, TranspositionTable.LOWERBOUND);
+    }
+}